@@ -1,3 +1,3 @@
 @echo off
 setlocal
-"%~dp0dups.pl" | finf -c - %* | "%~dp0dups.pl" x
+finf -o dups=1 %*
@@ -0,0 +1,305 @@
+package freecrumbs.finf;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A file with a snapshot of its attributes,
+ * typically captured while traversing a directory tree.
+ * Fields read metadata from the snapshot
+ * instead of asking the file system again.
+ * If the file system supports POSIX attributes,
+ * the snapshot is an instance of {@link PosixFileAttributes}.
+ * If it supports the {@code unix} attribute view,
+ * the snapshot also tells the number of hard links to the file,
+ * while the owner and group are looked up when asked for.
+ *
+ * @author Tone Sommerland
+ */
+public final class AttributedFile extends File
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final String UNIX_ATTRIBUTES = "unix:"
+            + "lastModifiedTime,lastAccessTime,creationTime,size,"
+            + "isRegularFile,isDirectory,isSymbolicLink,isOther,"
+            + "fileKey,permissions,nlink";
+
+    private final transient BasicFileAttributes attributes;
+    private final boolean symbolicLink;
+
+    /**
+     * Creates an attributed file.
+     * @param path the path of the file
+     * @param attributes the attributes of the file
+     */
+    public AttributedFile(
+            final Path path, final BasicFileAttributes attributes)
+    {
+        this(path, attributes, false);
+    }
+
+    private AttributedFile(
+            final Path path,
+            final BasicFileAttributes attributes,
+            final boolean symbolicLink)
+    {
+        super(path.toString());
+        this.attributes = requireNonNull(attributes, "attributes");
+        this.symbolicLink = symbolicLink;
+    }
+
+    /**
+     * Reads the attributes of the given path
+     * (following symbolic links)
+     * and returns an attributed file.
+     * POSIX attributes are read if supported,
+     * which takes no more file-system calls than basic ones.
+     * The path itself is read first,
+     * so a symbolic link takes a second call for its target.
+     */
+    public static AttributedFile of(final Path path) throws IOException
+    {
+        final BasicFileAttributes attributes
+            = readAttributes(path, LinkOption.NOFOLLOW_LINKS);
+        if (attributes.isSymbolicLink())
+        {
+            return new AttributedFile(path, readAttributes(path), true);
+        }
+        return new AttributedFile(path, attributes, false);
+    }
+
+    /**
+     * Returns the attributes of the given file:
+     * the snapshot if it is an attributed file,
+     * or else freshly read ones.
+     */
+    public static BasicFileAttributes attributesOf(final File file)
+            throws IOException
+    {
+        if (file instanceof AttributedFile)
+        {
+            return ((AttributedFile)file).attributes;
+        }
+        return readAttributes(file.toPath());
+    }
+
+    /**
+     * Returns the size of the given file,
+     * or zero if it cannot be determined,
+     * like {@link File#length()}.
+     */
+    public static long sizeOf(final File file)
+    {
+        try
+        {
+            return attributesOf(file).size();
+        }
+        catch (final IOException ex)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * The attribute snapshot of this file.
+     */
+    public BasicFileAttributes attributes()
+    {
+        return attributes;
+    }
+
+    /**
+     * The number of hard links to this file,
+     * or one if the snapshot does not tell.
+     */
+    public int links()
+    {
+        if (attributes instanceof UnixAttributes)
+        {
+            return ((UnixAttributes)attributes).links;
+        }
+        return 1;
+    }
+
+    /**
+     * Whether the path of this file is a symbolic link,
+     * in which case the snapshot is of the target.
+     */
+    public boolean isSymbolicLink()
+    {
+        return symbolicLink;
+    }
+
+    private static BasicFileAttributes readAttributes(
+            final Path path, final LinkOption... options) throws IOException
+    {
+        final Set<String> views
+            = path.getFileSystem().supportedFileAttributeViews();
+        if (views.contains("unix"))
+        {
+            return new UnixAttributes(
+                    path,
+                    Files.readAttributes(path, UNIX_ATTRIBUTES, options),
+                    options);
+        }
+        else if (views.contains("posix"))
+        {
+            return Files.readAttributes(
+                    path, PosixFileAttributes.class, options);
+        }
+        return Files.readAttributes(path, BasicFileAttributes.class, options);
+    }
+
+    /**
+     * Attributes read through the {@code unix} view in one call.
+     * The owner and group are not read along with the rest,
+     * as their names would be looked up for every file.
+     */
+    private static final class UnixAttributes implements PosixFileAttributes
+    {
+        private final Path path;
+        private final LinkOption[] options;
+        private final FileTime lastModifiedTime;
+        private final FileTime lastAccessTime;
+        private final FileTime creationTime;
+        private final long size;
+        private final boolean regularFile;
+        private final boolean directory;
+        private final boolean symbolicLink;
+        private final boolean other;
+        private final Object fileKey;
+        private final Set<PosixFilePermission> permissions;
+        private final int links;
+
+        @SuppressWarnings("unchecked")
+        private UnixAttributes(
+                final Path path,
+                final Map<String, Object> values,
+                final LinkOption... options)
+        {
+            this.path = path;
+            this.options = options;
+            this.lastModifiedTime = (FileTime)values.get("lastModifiedTime");
+            this.lastAccessTime = (FileTime)values.get("lastAccessTime");
+            this.creationTime = (FileTime)values.get("creationTime");
+            this.size = (Long)values.get("size");
+            this.regularFile = (Boolean)values.get("isRegularFile");
+            this.directory = (Boolean)values.get("isDirectory");
+            this.symbolicLink = (Boolean)values.get("isSymbolicLink");
+            this.other = (Boolean)values.get("isOther");
+            this.fileKey = values.get("fileKey");
+            this.permissions
+                = (Set<PosixFilePermission>)values.get("permissions");
+            this.links = (Integer)values.get("nlink");
+        }
+
+        @Override
+        public FileTime lastModifiedTime()
+        {
+            return lastModifiedTime;
+        }
+
+        @Override
+        public FileTime lastAccessTime()
+        {
+            return lastAccessTime;
+        }
+
+        @Override
+        public FileTime creationTime()
+        {
+            return creationTime;
+        }
+
+        @Override
+        public long size()
+        {
+            return size;
+        }
+
+        @Override
+        public boolean isRegularFile()
+        {
+            return regularFile;
+        }
+
+        @Override
+        public boolean isDirectory()
+        {
+            return directory;
+        }
+
+        @Override
+        public boolean isSymbolicLink()
+        {
+            return symbolicLink;
+        }
+
+        @Override
+        public boolean isOther()
+        {
+            return other;
+        }
+
+        @Override
+        public Object fileKey()
+        {
+            return fileKey;
+        }
+
+        @Override
+        public Set<PosixFilePermission> permissions()
+        {
+            return permissions;
+        }
+
+        /**
+         * @throws UncheckedIOException if the owner cannot be read
+         */
+        @Override
+        public UserPrincipal owner()
+        {
+            try
+            {
+                return Files.getOwner(path, options);
+            }
+            catch (final IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        /**
+         * @throws UncheckedIOException if the group cannot be read
+         */
+        @Override
+        public GroupPrincipal group()
+        {
+            try
+            {
+                return Files.readAttributes(
+                        path, PosixFileAttributes.class, options).group();
+            }
+            catch (final IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads files through a {@link FileChannel} into direct buffers,
+ * and updates the computations one after another with each buffer read.
+ * The buffers are pooled,
+ * so that concurrent reads of different files
+ * do not allocate a buffer per file.
+ * Files at or above a size threshold are memory mapped instead,
+ * and the computations are given slices of the mapping.
+ * Computations that
+ * {@link FieldComputation#update(ByteBuffer) accept buffers}
+ * thus see the content without it being copied onto the heap.
+ *
+ * @author Tone Sommerland
+ */
+final class ChannelContentReader implements ContentReader
+{
+    private static final int MAX_IDLE_BUFFERS = 16;
+    private static final long MAX_MAPPING = 1L << 30;
+
+    private final int bufferSize;
+    private final long mmapThreshold;
+    private final BlockingQueue<ByteBuffer> idle
+        = new ArrayBlockingQueue<>(MAX_IDLE_BUFFERS);
+
+    /**
+     * @param bufferSize the buffer size
+     * @param mmapThreshold the minimum size of files to map,
+     * or zero to never map
+     */
+    ChannelContentReader(final int bufferSize, final long mmapThreshold)
+    {
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("bufferSize < 1: " + bufferSize);
+        }
+        if (mmapThreshold < 0)
+        {
+            throw new IllegalArgumentException(
+                    "mmapThreshold < 0: " + mmapThreshold);
+        }
+        this.bufferSize = bufferSize;
+        this.mmapThreshold = mmapThreshold;
+    }
+
+    @Override
+    public void read(
+            final File file,
+            final Collection<? extends FieldComputation> computations)
+                    throws IOException
+    {
+        final var active = new ArrayList<FieldComputation>(computations);
+        if (active.isEmpty())
+        {
+            return;
+        }
+        try (final FileChannel channel
+                = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            final long size = channel.size();
+            if (mmapThreshold > 0 && size >= mmapThreshold)
+            {
+                map(channel, size, active);
+            }
+            else
+            {
+                read(channel, active);
+            }
+        }
+    }
+
+    private void read(
+            final FileChannel channel,
+            final List<FieldComputation> active) throws IOException
+    {
+        final ByteBuffer buffer = acquire();
+        try
+        {
+            while (channel.read(buffer.clear()) > 0)
+            {
+                if (!update(active, buffer.flip()))
+                {
+                    return;
+                }
+            }
+        }
+        finally
+        {
+            idle.offer(buffer);
+        }
+    }
+
+    /**
+     * Maps the file a region at a time,
+     * and updates the computations with slices of the buffer size.
+     */
+    private void map(
+            final FileChannel channel,
+            final long size,
+            final List<FieldComputation> active) throws IOException
+    {
+        for (long position = 0; position < size; position += MAX_MAPPING)
+        {
+            final MappedByteBuffer mapping = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    position,
+                    Math.min(MAX_MAPPING, size - position));
+            final int length = mapping.capacity();
+            for (int offset = 0; offset < length; offset += bufferSize)
+            {
+                final ByteBuffer slice = mapping
+                        .limit(Math.min(length - offset, bufferSize) + offset)
+                        .position(offset)
+                        .slice();
+                if (!update(active, slice))
+                {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the active computations with the given input,
+     * removing those that require no more.
+     * The position of the input is rewound for each computation.
+     * @return {@code false} if none remain
+     */
+    static boolean update(
+            final List<FieldComputation> active,
+            final ByteBuffer input) throws IOException
+    {
+        final int limit = input.limit();
+        for (int i = 0; i < active.size(); i++)
+        {
+            input.limit(limit).position(0);
+            if (!active.get(i).update(input))
+            {
+                active.remove(i--);
+            }
+        }
+        return !active.isEmpty();
+    }
+
+    private ByteBuffer acquire()
+    {
+        final ByteBuffer buffer = idle.poll();
+        return buffer == null ? ByteBuffer.allocateDirect(bufferSize) : buffer;
+    }
+
+}
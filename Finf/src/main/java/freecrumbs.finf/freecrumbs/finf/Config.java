@@ -4,6 +4,7 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.FileFilter;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -15,6 +16,16 @@ import java.util.Optional;
  *  <li>{@code filter}: filters input files (optional)</li>
  *  <li>{@code order}: sort order of the info units (optional)</li>
  *  <li>{@code count}: max info units to output ({@code < 0} = all)</li>
+ *  <li>{@code sortMemory}: approximate max bytes of info units
+ *  to keep in memory while sorting ({@code < 1} = unlimited)</li>
+ *  <li>{@code jobs}: independent configs for parallel processing,
+ *  one per worker thread (empty = sequential)</li>
+ *  <li>{@code pending}: max files in flight during parallel processing,
+ *  queued or being processed ({@code < 1} = four per job)</li>
+ *  <li>{@code dups}: whether or not to print groups of duplicates
+ *  instead of one info unit per file</li>
+ *  <li>{@code store}: keeps computed field values between runs,
+ *  and is to be closed when done (optional)</li>
  * </ul>
  *
  * @author Tone Sommerland
@@ -33,6 +44,11 @@ public final class Config
         private FileFilter filter;
         private Comparator<? super Info> order;
         private int count = -1;
+        private long sortMemory;
+        private List<Config> jobs = List.of();
+        private int pending;
+        private boolean dups;
+        private FieldStore store;
         
         public Builder(
                 final InfoGenerator generator, final InfoFormatter formatter)
@@ -74,12 +90,95 @@ public final class Config
             return this;
         }
 
+        /**
+         * Sets the sort memory.
+         * When exceeded, sorted runs of info units
+         * are spilled to temporary files.
+         * @param sortMemory the sort memory in bytes
+         * ({@code < 1} to turn off)
+         * @return {@code this}
+         */
+        public Builder setSortMemory(final long sortMemory)
+        {
+            this.sortMemory = sortMemory;
+            return this;
+        }
+
+        /**
+         * Sets the configs of the parallel jobs.
+         * Each job config must have its own generator and filter,
+         * as they will be used concurrently.
+         * Fewer than two jobs means sequential processing.
+         * @param jobs the job configs
+         * @return {@code this}
+         */
+        public Builder setJobs(final List<Config> jobs)
+        {
+            this.jobs = List.copyOf(jobs);
+            return this;
+        }
+
+        /**
+         * Sets the max number of files in flight
+         * during parallel processing.
+         * A file is in flight from when it is handed to the jobs
+         * until its result has been consumed in input order,
+         * so this limits how far ahead of the output the jobs may get.
+         * @param pending the max number of files in flight
+         * ({@code < 1} for four per job)
+         * @return {@code this}
+         */
+        public Builder setPending(final int pending)
+        {
+            this.pending = pending;
+            return this;
+        }
+
+        /**
+         * Sets duplicates mode.
+         * In this mode, the files are grouped by content,
+         * and only groups of two or more files are printed.
+         * The order then applies within each group,
+         * and the count is the max number of groups.
+         * @param dups whether or not to turn on duplicates mode
+         * @return {@code this}
+         */
+        public Builder setDups(final boolean dups)
+        {
+            this.dups = dups;
+            return this;
+        }
+
+        /**
+         * Sets the field store
+         * that backs the field cache of the generator.
+         * The config does not use the store itself,
+         * but carries it so that it can be closed when done.
+         * @param store the field store (nullable)
+         * @return {@code this}
+         */
+        public Builder setStore(final FieldStore store)
+        {
+            this.store = store;
+            return this;
+        }
+
         /**
          * Builds the config instance.
          */
         public Config build()
         {
-            return new Config(generator, formatter, filter, order, count);
+            return new Config(
+                    generator,
+                    formatter,
+                    filter,
+                    order,
+                    count,
+                    sortMemory,
+                    jobs,
+                    pending,
+                    dups,
+                    store);
         }
     }
     
@@ -88,21 +187,36 @@ public final class Config
     private final FileFilter filter;
     private final Comparator<? super Info> order;
     private final int count;
+    private final long sortMemory;
+    private final List<Config> jobs;
+    private final int pending;
+    private final boolean dups;
+    private final FieldStore store;
     
     private Config(
         final InfoGenerator generator,
         final InfoFormatter formatter,
         final FileFilter filter,
         final Comparator<? super Info> order,
-        final int count)
+        final int count,
+        final long sortMemory,
+        final List<Config> jobs,
+        final int pending,
+        final boolean dups,
+        final FieldStore store)
     {
         assert generator != null;
         assert formatter != null;
-        this.generator = generator;
-        this.formatter = formatter;
-        this.filter    = filter;
-        this.order     = order;
-        this.count     = count;
+        this.generator  = generator;
+        this.formatter  = formatter;
+        this.filter     = filter;
+        this.order      = order;
+        this.count      = count;
+        this.sortMemory = sortMemory;
+        this.jobs       = jobs;
+        this.pending    = pending;
+        this.dups       = dups;
+        this.store      = store;
     }
     
     public InfoGenerator generator()
@@ -130,4 +244,29 @@ public final class Config
         return count;
     }
     
+    public long sortMemory()
+    {
+        return sortMemory;
+    }
+    
+    public List<Config> jobs()
+    {
+        return jobs;
+    }
+    
+    public int pending()
+    {
+        return pending;
+    }
+    
+    public boolean dups()
+    {
+        return dups;
+    }
+    
+    public Optional<FieldStore> store()
+    {
+        return Optional.ofNullable(store);
+    }
+    
 }
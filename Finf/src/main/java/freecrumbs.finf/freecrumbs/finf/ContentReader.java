@@ -0,0 +1,107 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Reads file content into field computations.
+ * 
+ * @author Tone Sommerland
+ */
+public interface ContentReader
+{
+    /**
+     * Returns a reader that updates the computations one after another
+     * with each buffer read.
+     * @param bufferSize the buffer size
+     * @throws IllegalArgumentException if the buffer size is less than one
+     */
+    public static ContentReader sequential(final int bufferSize)
+    {
+        return new SequentialContentReader(bufferSize);
+    }
+    
+    /**
+     * Returns a reader that fans the content out to the computations,
+     * so that
+     * {@link FieldComputation#isIndependent() independent} computations
+     * are updated on threads of their own.
+     * The other computations are updated one after another
+     * on a single thread.
+     * One thread reads the file into a ring of buffers,
+     * and a buffer is reused once all the threads are done with it.
+     * Files no larger than a buffer are read sequentially.
+     * @param bufferSize the size of each buffer
+     * @param buffers the number of buffers in the ring
+     * @throws IllegalArgumentException
+     * if the buffer size or the number of buffers is less than one
+     */
+    public static ContentReader fanOut(final int bufferSize, final int buffers)
+    {
+        return new FanOutContentReader(bufferSize, buffers);
+    }
+    
+    /**
+     * Returns a reader that reads ahead on a thread of its own
+     * into a ring of buffers,
+     * while the calling thread updates the computations
+     * one after another with each buffer read.
+     * The buffers are recycled from file to file.
+     * Files no larger than a buffer are read sequentially.
+     * @param bufferSize the size of each buffer
+     * @param buffers the number of buffers in the ring
+     * @throws IllegalArgumentException
+     * if the buffer size or the number of buffers is less than one
+     */
+    public static ContentReader prefetch(
+            final int bufferSize, final int buffers)
+    {
+        return new PrefetchContentReader(bufferSize, buffers);
+    }
+    
+    /**
+     * Returns a reader that reads through a file channel
+     * into pooled direct buffers,
+     * and updates the computations one after another
+     * with each buffer read.
+     * Files at or above the given size are memory mapped instead.
+     * @param bufferSize the buffer size
+     * @param mmapThreshold the minimum size in bytes of files to map,
+     * or zero to never map
+     * @throws IllegalArgumentException if the buffer size is less than one
+     * or the threshold is negative
+     */
+    public static ContentReader channel(
+            final int bufferSize, final long mmapThreshold)
+    {
+        return new ChannelContentReader(bufferSize, mmapThreshold);
+    }
+    
+    /**
+     * Returns a reader that bypasses the page cache with direct I/O
+     * where supported,
+     * and updates the computations one after another
+     * with each buffer read.
+     * @param bufferSize the minimum buffer size,
+     * which is rounded up to a multiple of the file-system block size
+     * @throws IllegalArgumentException if the buffer size is less than one
+     */
+    public static ContentReader direct(final int bufferSize)
+    {
+        return new DirectContentReader(bufferSize);
+    }
+    
+    /**
+     * Reads the content of the given file into the given computations
+     * until either the end of the file is reached
+     * or none of the computations require more input.
+     * The computations have been reset,
+     * and will be finished by the caller.
+     */
+    public abstract void read(
+            File file,
+            Collection<? extends FieldComputation> computations)
+                    throws IOException;
+
+}
@@ -0,0 +1,220 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads files with direct I/O,
+ * bypassing the operating system's page cache,
+ * so that reading a lot of files
+ * does not evict the cached data of other processes.
+ * Buffers are aligned to, and a multiple of,
+ * the block size of the file store,
+ * and are pooled like those of {@link ChannelContentReader}.
+ * Files that cannot be opened for direct I/O,
+ * as on file systems that do not support it,
+ * are read through the page cache as usual.
+ * The direct open option is looked up reflectively,
+ * as it is not part of the standard API.
+ *
+ * @author Tone Sommerland
+ */
+final class DirectContentReader implements ContentReader
+{
+    private static final int MAX_IDLE_BUFFERS = 16;
+    private static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private static final String EXTENDED_OPEN_OPTION
+        = "com.sun.nio.file.ExtendedOpenOption";
+
+    /**
+     * The direct open option, or null if not available.
+     */
+    private static final OpenOption DIRECT = directOrNull();
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> idle
+        = new ArrayBlockingQueue<>(MAX_IDLE_BUFFERS);
+
+    /**
+     * The block size of the directory of the last file read,
+     * since consecutive files tend to share a directory.
+     */
+    private volatile BlockSize lastBlockSize = new BlockSize(null, 0);
+
+    /**
+     * @param bufferSize the minimum buffer size,
+     * which is rounded up to a multiple of the block size
+     */
+    DirectContentReader(final int bufferSize)
+    {
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("bufferSize < 1: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void read(
+            final File file,
+            final Collection<? extends FieldComputation> computations)
+                    throws IOException
+    {
+        final var active = new ArrayList<FieldComputation>(computations);
+        if (active.isEmpty())
+        {
+            return;
+        }
+        final Path path = file.toPath();
+        final int blockSize = blockSize(path);
+        final ByteBuffer buffer = acquire(blockSize);
+        final FileChannel direct = openDirectOrNull(path);
+        try (
+            final FileChannel channel = direct == null
+                ? FileChannel.open(path, StandardOpenOption.READ) : direct;
+        )
+        {
+            for (
+                    int bytesRead = channel.read(buffer.clear());
+                    bytesRead > 0;
+                    bytesRead = channel.read(buffer.clear()))
+            {
+                if (!ChannelContentReader.update(active, buffer.flip()))
+                {
+                    return;
+                }
+                else if (channel == direct && bytesRead % blockSize != 0)
+                {
+                    // A partial block is the end of the file,
+                    // and reading on would be unaligned.
+                    // A plain read may be short before the end.
+                    return;
+                }
+            }
+        }
+        finally
+        {
+            idle.offer(buffer);
+        }
+    }
+
+    /**
+     * Opens the file for direct I/O.
+     * @return null if the file cannot be opened for direct I/O
+     */
+    private static FileChannel openDirectOrNull(final Path path)
+    {
+        if (DIRECT == null)
+        {
+            return null;
+        }
+        try
+        {
+            return FileChannel.open(path, StandardOpenOption.READ, DIRECT);
+        }
+        catch (final UnsupportedOperationException | IOException ex)
+        {
+            return null;
+        }
+    }
+
+    private static OpenOption directOrNull()
+    {
+        try
+        {
+            for (final Object option
+                    : Class.forName(EXTENDED_OPEN_OPTION).getEnumConstants())
+            {
+                if (option instanceof OpenOption
+                        && "DIRECT".equals(option.toString()))
+                {
+                    return (OpenOption)option;
+                }
+            }
+        }
+        catch (final ClassNotFoundException | RuntimeException ex)
+        {
+            // Not available.
+        }
+        return null;
+    }
+
+    /**
+     * Returns an idle buffer if it suits the given block size,
+     * or else a new one.
+     */
+    private ByteBuffer acquire(final int blockSize)
+    {
+        final ByteBuffer buffer = idle.poll();
+        if (buffer != null
+                && buffer.capacity() % blockSize == 0
+                && buffer.alignmentOffset(0, blockSize) == 0)
+        {
+            return buffer;
+        }
+        final int size = (bufferSize + blockSize - 1) / blockSize * blockSize;
+        return ByteBuffer.allocateDirect(size + blockSize - 1)
+                .alignedSlice(blockSize);
+    }
+
+    private int blockSize(final Path path)
+    {
+        final Path directory = path.toAbsolutePath().getParent();
+        final BlockSize last = lastBlockSize;
+        if (directory != null && directory.equals(last.directory))
+        {
+            return last.size;
+        }
+        final int size = readBlockSize(path);
+        lastBlockSize = new BlockSize(directory, size);
+        return size;
+    }
+
+    /**
+     * Returns the block size of the file store of the given file,
+     * or a common block size if it cannot be determined
+     * or is not a power of two.
+     */
+    private static int readBlockSize(final Path path)
+    {
+        try
+        {
+            final long size = Files.getFileStore(path).getBlockSize();
+            if (size > 0
+                    && size <= Integer.MAX_VALUE / 2
+                    && Long.bitCount(size) == 1)
+            {
+                return (int)size;
+            }
+        }
+        catch (final UnsupportedOperationException | IOException ex)
+        {
+            // Use the default.
+        }
+        return DEFAULT_BLOCK_SIZE;
+    }
+
+    private static final class BlockSize
+    {
+        final Path directory;
+        final int size;
+
+        BlockSize(final Path directory, final int size)
+        {
+            this.directory = directory;
+            this.size = size;
+        }
+    }
+
+}
@@ -0,0 +1,291 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.calclipse.lib.misc.EncodingUtil;
+
+/**
+ * Finds and prints groups of files with identical content.
+ * The files are narrowed down in three rounds,
+ * so that most files are never read:
+ * <ol>
+ *  <li>by size</li>
+ *  <li>by a digest of the first and last blocks</li>
+ *  <li>by a digest of the entire content</li>
+ * </ol>
+ * Files that are small enough for the blocks to cover them entirely
+ * skip the last round.
+ * The formatted info of each file is printed,
+ * and each group is followed by an empty line.
+ * Groups appear in the order their first files were encountered.
+ *
+ * @author Tone Sommerland
+ */
+final class Duplicates
+{
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A file that may have duplicates.
+     */
+    private static final class Candidate
+    {
+        final File file;
+        final Info info;
+        final long size;
+        int index;
+        String digest;
+
+        Candidate(final File file, final Info info)
+        {
+            this.file = file;
+            this.info = info;
+            this.size = AttributedFile.sizeOf(file);
+        }
+    }
+
+    private Duplicates()
+    {
+    }
+
+    /**
+     * Prints the groups of duplicates among the given files.
+     * Files rejected by the filter are not considered.
+     * If the config has an order,
+     * it sorts the files within each group.
+     * The count, if any, is the max number of groups to print.
+     * @param files the input files
+     * @param config the configuration
+     * @param out the output destination
+     */
+    static void output(
+            final Stream<? extends File> files,
+            final Config config,
+            final PrintStream out) throws IOException
+    {
+        final var candidates = new ArrayList<Candidate>();
+        each(
+                files.iterator(),
+                config,
+                Duplicates::candidateIfAccepted,
+                candidate -> addIfNonNull(candidate, candidates));
+        final var groups = new ArrayList<List<Candidate>>();
+        final var nonEmpty = new ArrayList<List<Candidate>>();
+        for (final List<Candidate> group
+                : grouped(candidates, candidate -> candidate.size))
+        {
+            if (group.get(0).size == 0)
+            {
+                groups.add(group);
+            }
+            else
+            {
+                nonEmpty.add(group);
+            }
+        }
+        final var large = new ArrayList<List<Candidate>>();
+        for (final List<Candidate> group
+                : narrowed(nonEmpty, config, Duplicates::partialDigest))
+        {
+            if (group.get(0).size <= 2 * BLOCK_SIZE)
+            {
+                groups.add(group);
+            }
+            else
+            {
+                large.add(group);
+            }
+        }
+        groups.addAll(narrowed(large, config, Duplicates::fullDigest));
+        groups.sort(Comparator.comparingInt(group -> group.get(0).index));
+        print(groups, config, out);
+    }
+
+    /**
+     * Splits each group by a digest of its members' content,
+     * keeping only the new groups with two or more members.
+     * The files of all the groups are digested in one go,
+     * so that parallel jobs are kept busy.
+     */
+    private static Collection<List<Candidate>> narrowed(
+            final Collection<List<Candidate>> groups,
+            final Config config,
+            final Digester digester) throws IOException
+    {
+        final var members = new ArrayList<Candidate>();
+        groups.forEach(members::addAll);
+        final Iterator<Candidate> digested = members.iterator();
+        each(
+                members.stream().map(member -> member.file).iterator(),
+                config,
+                (file, job) -> digester.digest(file),
+                digest -> setDigest(digested.next(), digest));
+        return grouped(
+                members, member -> member.size + ":" + member.digest);
+    }
+
+    /**
+     * Groups the candidates by key,
+     * dropping groups with fewer than two members.
+     */
+    private static <K> Collection<List<Candidate>> grouped(
+            final List<Candidate> candidates,
+            final Function<? super Candidate, ? extends K> key)
+    {
+        final Map<K, List<Candidate>> groups = new LinkedHashMap<>();
+        for (final Candidate candidate : candidates)
+        {
+            groups.computeIfAbsent(key.apply(candidate), k -> new ArrayList<>())
+                .add(candidate);
+        }
+        groups.values().removeIf(group -> group.size() < 2);
+        return groups.values();
+    }
+
+    private static void print(
+            final List<List<Candidate>> groups,
+            final Config config,
+            final PrintStream out) throws IOException
+    {
+        for (int i = 0; (config.count() < 0 || i < config.count())
+                && i < groups.size(); i++)
+        {
+            final List<Candidate> group = groups.get(i);
+            config.order().ifPresent(
+                    order -> group.sort((c1, c2) ->
+                        order.compare(c1.info, c2.info)));
+            for (final Candidate candidate : group)
+            {
+                config.formatter().format(candidate.info, out);
+            }
+            out.println();
+        }
+    }
+
+    /**
+     * Performs the task on each of the files,
+     * in parallel if the config has jobs.
+     */
+    private static <R> void each(
+            final Iterator<? extends File> files,
+            final Config config,
+            final Jobs.Task<? extends R> task,
+            final Jobs.Sink<? super R> sink) throws IOException
+    {
+        if (config.jobs().size() > 1)
+        {
+            Jobs.run(files, config.jobs(), config.pending(), task, sink);
+            return;
+        }
+        while (files.hasNext())
+        {
+            if (!sink.accept(task.perform(files.next(), config)))
+            {
+                return;
+            }
+        }
+    }
+
+    private static Candidate candidateIfAccepted(
+            final File file, final Config job) throws IOException
+    {
+        final Info info = Finf.infoIfAccepted(file, job);
+        return info == null ? null : new Candidate(file, info);
+    }
+
+    private static boolean addIfNonNull(
+            final Candidate candidate, final List<Candidate> candidates)
+    {
+        if (candidate != null)
+        {
+            candidate.index = candidates.size();
+            candidates.add(candidate);
+        }
+        return true;
+    }
+
+    private static boolean setDigest(
+            final Candidate candidate, final String digest)
+    {
+        candidate.digest = digest;
+        return true;
+    }
+
+    @FunctionalInterface
+    private static interface Digester
+    {
+        public abstract String digest(File file) throws IOException;
+    }
+
+    /**
+     * Digests the first and the last block of the given file,
+     * which together may cover the entire file.
+     */
+    private static String partialDigest(final File file) throws IOException
+    {
+        final MessageDigest digest = messageDigest();
+        try (final var in = new RandomAccessFile(file, "r"))
+        {
+            final long size = in.length();
+            final var block = new byte[(int)Math.min(BLOCK_SIZE, size)];
+            in.readFully(block);
+            digest.update(block);
+            final long rest = size - block.length;
+            if (rest > 0)
+            {
+                final int length = (int)Math.min(BLOCK_SIZE, rest);
+                in.seek(size - length);
+                in.readFully(block, 0, length);
+                digest.update(block, 0, length);
+            }
+        }
+        return EncodingUtil.bytesToHex(false, digest.digest());
+    }
+
+    private static String fullDigest(final File file) throws IOException
+    {
+        final MessageDigest digest = messageDigest();
+        final var buffer = new byte[BUFFER_SIZE];
+        try (final var in = new FileInputStream(file))
+        {
+            for (
+                    int bytesRead = in.read(buffer);
+                    bytesRead > 0;
+                    bytesRead = in.read(buffer))
+            {
+                digest.update(buffer, 0, bytesRead);
+            }
+        }
+        return EncodingUtil.bytesToHex(false, digest.digest());
+    }
+
+    private static MessageDigest messageDigest() throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException ex)
+        {
+            throw new IOException(ex);
+        }
+    }
+
+}
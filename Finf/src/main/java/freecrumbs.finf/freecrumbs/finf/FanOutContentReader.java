@@ -0,0 +1,270 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans file content out to lanes of computations,
+ * each lane updated on a thread of its own.
+ * Every independent computation has a lane to itself,
+ * and the other computations share one lane,
+ * in which they are updated in the given order.
+ * The calling thread reads the file into a ring of buffers.
+ * Each buffer read is handed to every lane still in progress,
+ * and returned to the ring when all of them have released it.
+ * The lanes run on the {@link Jobs#helpers() helper threads}
+ * shared by all readers.
+ * 
+ * @author Tone Sommerland
+ */
+final class FanOutContentReader implements ContentReader
+{
+    private static final Chunk END = new Chunk(0);
+    
+    private final int bufferSize;
+    private final int buffers;
+
+    FanOutContentReader(final int bufferSize, final int buffers)
+    {
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("bufferSize < 1: " + bufferSize);
+        }
+        if (buffers < 1)
+        {
+            throw new IllegalArgumentException("buffers < 1: " + buffers);
+        }
+        this.bufferSize = bufferSize;
+        this.buffers = buffers;
+    }
+
+    @Override
+    public void read(
+            final File file,
+            final Collection<? extends FieldComputation> computations)
+                    throws IOException
+    {
+        final List<Lane> lanes = lanes(computations);
+        try (final var in = new FileInputStream(file))
+        {
+            if (lanes.size() < 2 || AttributedFile.sizeOf(file) <= bufferSize)
+            {
+                SequentialContentReader.update(
+                        in, new byte[bufferSize], computations);
+            }
+            else
+            {
+                fanOut(in, lanes);
+            }
+        }
+    }
+    
+    private static List<Lane> lanes(
+            final Collection<? extends FieldComputation> computations)
+    {
+        final var lanes = new ArrayList<Lane>();
+        final var shared = new ArrayList<FieldComputation>();
+        for (final FieldComputation computation : computations)
+        {
+            if (computation.isIndependent())
+            {
+                lanes.add(new Lane(List.of(computation)));
+            }
+            else
+            {
+                shared.add(computation);
+            }
+        }
+        if (!shared.isEmpty())
+        {
+            lanes.add(new Lane(shared));
+        }
+        return lanes;
+    }
+    
+    /**
+     * Returns once every lane is done with the content,
+     * so that no computation is updated after this method returns.
+     */
+    private void fanOut(final FileInputStream in, final List<Lane> lanes)
+            throws IOException
+    {
+        final BlockingQueue<Chunk> ring = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++)
+        {
+            ring.add(new Chunk(bufferSize));
+        }
+        final var futures = new ArrayList<Future<Void>>(lanes.size());
+        for (final Lane lane : lanes)
+        {
+            futures.add(Jobs.helpers().submit(() -> lane.run(ring)));
+        }
+        Exception failure = null;
+        try
+        {
+            feed(in, lanes, ring);
+        }
+        catch (final IOException ex)
+        {
+            failure = ex;
+        }
+        finally
+        {
+            for (final Lane lane : lanes)
+            {
+                lane.chunks.add(END);
+            }
+        }
+        for (final Future<Void> future : futures)
+        {
+            try
+            {
+                Jobs.result(future);
+            }
+            catch (final IOException | RuntimeException ex)
+            {
+                failure = failure == null ? ex : failure;
+            }
+        }
+        if (failure instanceof IOException)
+        {
+            throw (IOException)failure;
+        }
+        else if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException)failure;
+        }
+    }
+    
+    private static void feed(
+            final FileInputStream in,
+            final List<Lane> lanes,
+            final BlockingQueue<Chunk> ring) throws IOException
+    {
+        while (true)
+        {
+            final var active = new ArrayList<Lane>(lanes.size());
+            for (final Lane lane : lanes)
+            {
+                if (!lane.done)
+                {
+                    active.add(lane);
+                }
+            }
+            if (active.isEmpty())
+            {
+                return;
+            }
+            final Chunk chunk;
+            try
+            {
+                chunk = ring.take();
+            }
+            catch (final InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            }
+            chunk.length = in.read(chunk.bytes);
+            if (chunk.length <= 0)
+            {
+                return;
+            }
+            chunk.holders.set(active.size());
+            for (final Lane lane : active)
+            {
+                lane.chunks.add(chunk);
+            }
+        }
+    }
+    
+    /**
+     * A buffer of the ring.
+     */
+    private static final class Chunk
+    {
+        private final byte[] bytes;
+        private final AtomicInteger holders = new AtomicInteger();
+        private int length;
+        
+        private Chunk(final int size)
+        {
+            this.bytes = new byte[size];
+        }
+        
+        private void release(final BlockingQueue<? super Chunk> ring)
+        {
+            if (holders.decrementAndGet() == 0)
+            {
+                ring.add(this);
+            }
+        }
+    }
+    
+    /**
+     * Computations updated one after another on a thread of their own.
+     * A lane that is done, or that has failed,
+     * keeps releasing the chunks handed to it until the end.
+     */
+    private static final class Lane
+    {
+        private final BlockingQueue<Chunk> chunks
+            = new LinkedBlockingQueue<>();
+        
+        private final List<FieldComputation> active;
+        private volatile boolean done;
+        
+        private Lane(final List<? extends FieldComputation> computations)
+        {
+            this.active = new ArrayList<>(computations);
+        }
+        
+        private Void run(final BlockingQueue<? super Chunk> ring)
+                throws IOException, InterruptedException
+        {
+            Exception failure = null;
+            for (
+                    Chunk chunk = chunks.take();
+                    chunk != END;
+                    chunk = chunks.take())
+            {
+                try
+                {
+                    if (!done && !SequentialContentReader.update(
+                            active, chunk.bytes, chunk.length))
+                    {
+                        done = true;
+                    }
+                }
+                catch (final IOException | RuntimeException ex)
+                {
+                    done = true;
+                    failure = failure == null ? ex : failure;
+                }
+                finally
+                {
+                    chunk.release(ring);
+                }
+            }
+            if (failure instanceof IOException)
+            {
+                throw (IOException)failure;
+            }
+            else if (failure instanceof RuntimeException)
+            {
+                throw (RuntimeException)failure;
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of field values per file.
+ * Entries should be {@link #release(File) released}
+ * when the info about a file will no longer be requested.
+ * In addition, the cache is bounded:
+ * the least recently used entries are evicted
+ * when the number of entries exceeds the capacity.
+ * This class is thread-safe.
+ * The entries are spread over a number of stripes,
+ * each guarded by its own lock,
+ * and the value maps of the entries are concurrent.
+ * The cache may be backed by a {@link FieldStore},
+ * which keeps computed values between runs.
+ * Computed values are also shared
+ * by the paths of a file with several paths,
+ * such as hard links,
+ * until all of its paths have been released,
+ * for up to a number of files that is set by the link capacity.
+ *
+ * @author Tone Sommerland
+ */
+public final class FieldCache
+{
+    /**
+     * The default capacity.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * The default link capacity.
+     */
+    public static final int DEFAULT_LINK_CAPACITY = 4096;
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes;
+    private final LinkedValues links;
+    private final FieldStore store;
+
+    /**
+     * Creates a field cache backed by a store.
+     * @param capacity the max number of files to cache values for
+     * @param linkCapacity the max number of files with several paths
+     * to share computed values between the paths of at a time
+     * (zero to share none)
+     * @param store keeps computed values between runs (nullable)
+     * @throws IllegalArgumentException
+     * if the capacity is less than one or the link capacity is negative
+     */
+    public FieldCache(
+            final int capacity,
+            final int linkCapacity,
+            final FieldStore store)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("capacity < 1: " + capacity);
+        }
+        this.links = new LinkedValues(linkCapacity);
+        final int stripeCapacity = Math.max(1, capacity / STRIPES);
+        this.stripes = new Stripe[Math.min(STRIPES, capacity)];
+        for (int i = 0; i < stripes.length; i++)
+        {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        this.store = store;
+    }
+
+    /**
+     * Creates a field cache backed by a store,
+     * with the default link capacity.
+     * @param capacity the max number of files to cache values for
+     * @param store keeps computed values between runs (nullable)
+     * @throws IllegalArgumentException if the capacity is less than one
+     */
+    public FieldCache(final int capacity, final FieldStore store)
+    {
+        this(capacity, DEFAULT_LINK_CAPACITY, store);
+    }
+
+    /**
+     * Creates a field cache.
+     * @param capacity the max number of files to cache values for
+     * @throws IllegalArgumentException if the capacity is less than one
+     */
+    public FieldCache(final int capacity)
+    {
+        this(capacity, null);
+    }
+
+    /**
+     * Creates a field cache with the default capacity.
+     */
+    public FieldCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the cached values of the given file,
+     * creating an empty entry if absent.
+     * The returned map may be modified to add values to the cache.
+     */
+    public Map<String, String> values(final File file)
+    {
+        final Stripe stripe = stripeOf(file);
+        synchronized (stripe)
+        {
+            return stripe.computeIfAbsent(
+                    file, key -> new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * The computed values shared by the paths of each file.
+     */
+    LinkedValues links()
+    {
+        return links;
+    }
+
+    /**
+     * The store backing this cache, if any.
+     */
+    Optional<FieldStore> store()
+    {
+        return Optional.ofNullable(store);
+    }
+
+    /**
+     * Discards the cached values of the given file,
+     * and signals that this path to it is done with.
+     */
+    public void release(final File file)
+    {
+        final Stripe stripe = stripeOf(file);
+        synchronized (stripe)
+        {
+            stripe.remove(file);
+        }
+        links.release(file);
+    }
+
+    private Stripe stripeOf(final File file)
+    {
+        final int hash = file.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    private static final class Stripe
+        extends LinkedHashMap<File, Map<String, String>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Stripe(final int capacity)
+        {
+            super(16, .75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<File, Map<String, String>> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+
+}
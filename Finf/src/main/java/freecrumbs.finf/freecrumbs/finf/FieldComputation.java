@@ -2,6 +2,7 @@ package freecrumbs.finf;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * A field-value computation.
@@ -42,6 +43,77 @@ public interface FieldComputation
     public abstract boolean update(byte[] input, int offset, int length)
             throws IOException;
     
+    /**
+     * Updates the computation with the remaining bytes of the given buffer.
+     * The content of the buffer should not be modified by this method,
+     * but its position may be.
+     * If this method returns {@code false},
+     * it will not be called again during the ongoing computation.
+     * @param input the next input to process
+     * @return {@code true}
+     * if this computation requires more input for the current computation
+     * @implSpec
+     * The default implementation passes the backing array to
+     * {@link #update(byte[], int, int)} if the buffer has one,
+     * or else a copy of the remaining bytes
+     * in an array that is reused by the calling thread.
+     */
+    public default boolean update(final ByteBuffer input) throws IOException
+    {
+        if (input.hasArray())
+        {
+            return update(
+                    input.array(),
+                    input.arrayOffset() + input.position(),
+                    input.remaining());
+        }
+        final int length = input.remaining();
+        final byte[] copy = Scratch.array(length);
+        input.get(copy, 0, length);
+        return update(copy, 0, length);
+    }
+    
+    /**
+     * Whether or not this computation shares no mutable state
+     * with other computations.
+     * An independent computation may be updated on a thread of its own,
+     * concurrently with other computations of the same file.
+     * @implSpec
+     * The default implementation returns {@code false}.
+     */
+    public default boolean isIndependent()
+    {
+        return false;
+    }
+    
+    /**
+     * Whether or not this computation is to be
+     * {@link #update(byte[], int, int) served} the file content.
+     * A computation that is not is finished without being updated,
+     * and the file is not read for it.
+     * This method is called after {@link #reset(File)}.
+     * @implSpec
+     * The default implementation returns {@code true}.
+     */
+    public default boolean readsContent()
+    {
+        return true;
+    }
+
+    /**
+     * A definition of what this computation computes,
+     * or null if the value may not be {@link FieldStore stored}.
+     * Computations with equal definitions
+     * must compute equal values from equal file content,
+     * and the value must depend on nothing but the content.
+     * @implSpec
+     * The default implementation returns null.
+     */
+    public default String definition()
+    {
+        return null;
+    }
+    
     /**
      * Finishes the computation and returns the calculated value.
      */
@@ -1,11 +1,10 @@
 package freecrumbs.finf;
 
+import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -17,50 +16,97 @@ import java.util.stream.Stream;
  * The info obtained by this reader will contain
  * the values of this reader's fields
  * plus any values obtained by co-caching readers.
+ * Co-caching readers share a {@link FieldCache},
+ * so releasing a file from one of them
+ * releases it from all of them.
+ * If the cache is backed by a {@link FieldStore},
+ * computed values are looked up in the store before the file is read,
+ * and values that had to be computed are stored.
+ * Computed values are shared by the paths of a file,
+ * so that a file with several hard links is read only once.
  * 
  * @author Tone Sommerland
  */
 public final class FieldReader implements InfoGenerator
 {
-    private final Map<File, Map<String, String>> cache;
-    private final byte[] buffer;
+    private final FieldCache cache;
+    private final ContentReader contentReader;
     private final Field[] fields;
 
     private FieldReader(
-            final Map<File, Map<String, String>> cache,
-            final int bufferSize,
+            final FieldCache cache,
+            final ContentReader contentReader,
             final Field[] fields)
     {
         assert cache != null;
-        if (bufferSize < 1)
-        {
-            throw new IllegalArgumentException("bufferSize < 1: " + bufferSize);
-        }
-        this.cache  = cache;
-        this.buffer = new byte[bufferSize];
+        this.cache = cache;
+        this.contentReader = requireNonNull(contentReader, "contentReader");
         this.fields = fields.clone();
     }
     
     /**
      * Returns an instance of this class.
+     * @param cache the cache to store field values in
+     * @param contentReader reads a file's content into the computations
+     * @param fields the fields to read
+     */
+    public static FieldReader of(
+            final FieldCache cache,
+            final ContentReader contentReader,
+            final Field... fields)
+    {
+        return new FieldReader(
+                requireNonNull(cache, "cache"), contentReader, fields);
+    }
+    
+    /**
+     * Returns an instance of this class
+     * that reads file content sequentially.
+     * @param cache the cache to store field values in
+     * @param bufferSize the buffer size used when reading a file's content
+     * @param fields the fields to read
+     * @throws IllegalArgumentException if the buffer size is zero or negative
+     */
+    public static FieldReader of(
+            final FieldCache cache,
+            final int bufferSize,
+            final Field... fields)
+    {
+        return of(cache, ContentReader.sequential(bufferSize), fields);
+    }
+    
+    /**
+     * Returns an instance of this class with its own cache.
      * @param bufferSize the buffer size used when reading a file's content
      * @param fields the fields to read
      * @throws IllegalArgumentException if the buffer size is zero or negative
      */
     public static FieldReader of(final int bufferSize, final Field... fields)
     {
-        return new FieldReader(new HashMap<>(), bufferSize, fields);
+        return of(new FieldCache(), bufferSize, fields);
     }
     
     /**
      * Returns an instance that co-caches values with this instance.
+     * @param contentReader reads a file's content into the computations
+     * @param fields the fields to read
+     */
+    public FieldReader coCaching(
+            final ContentReader contentReader, final Field... fields)
+    {
+        return new FieldReader(this.cache, contentReader, fields);
+    }
+    
+    /**
+     * Returns an instance that co-caches values with this instance,
+     * and that reads file content sequentially.
      * @param bufferSize the buffer size used when reading a file's content
      * @param fields the fields to read
      * @throws IllegalArgumentException if the buffer size is zero or negative
      */
     public FieldReader coCaching(final int bufferSize, final Field... fields)
     {
-        return new FieldReader(this.cache, bufferSize, fields);
+        return coCaching(ContentReader.sequential(bufferSize), fields);
     }
     
     /**
@@ -74,13 +120,19 @@ public final class FieldReader implements InfoGenerator
     @Override
     public Info infoAbout(final File file) throws IOException
     {
-        final Map<String, String> values = cache.computeIfAbsent(
-                file, key -> new HashMap<>());
+        final Map<String, String> values = cache.values(file);
         putValues(file, values);
+        putStored(file, values);
         putComputations(file, values);
         return new Info(values);
     }
     
+    @Override
+    public void release(final File file)
+    {
+        cache.release(file);
+    }
+    
     private void putValues(
             final File file,
             final Map<? super String, ? super String> values) throws IOException
@@ -94,19 +146,61 @@ public final class FieldReader implements InfoGenerator
         }
     }
     
+    /**
+     * Puts the values of computed fields
+     * that are known from another path to the same file,
+     * or from the store, if any.
+     */
+    private void putStored(
+            final File file,
+            final Map<? super String, ? super String> values) throws IOException
+    {
+        final FieldStore store = cache.store().orElse(null);
+        final var stored = new HashMap<String, String>();
+        for (final Field field : nonCached(values))
+        {
+            final String definition = field.isComputed()
+                    ? field.computation().definition() : null;
+            if (definition != null)
+            {
+                String value = cache.links().get(file, definition);
+                if (value == null && store != null)
+                {
+                    value = store.get(file, definition);
+                    if (value != null)
+                    {
+                        stored.put(definition, value);
+                    }
+                }
+                if (value != null)
+                {
+                    values.put(field.name(), value);
+                }
+            }
+        }
+        cache.links().put(file, stored);
+    }
+    
     private void putComputations(
             final File file,
             final Map<? super String, ? super String> values) throws IOException
     {
         final Collection<Field> notAborted = resetAbort(file, values);
-        final Collection<FieldComputation> compsToUpdate = computationsIn(
+        final Collection<FieldComputation> computations = computationsIn(
                 notAborted);
-        if (compsToUpdate.isEmpty())
+        if (computations.isEmpty())
         {
             return;
         }
-        update(compsToUpdate, buffer, file);
-        compute(notAborted, values);
+        final Collection<FieldComputation> compsToUpdate = computations
+                .stream()
+                .filter(FieldComputation::readsContent)
+                .collect(toList());
+        if (!compsToUpdate.isEmpty())
+        {
+            contentReader.read(file, compsToUpdate);
+        }
+        compute(file, notAborted, values);
     }
     
     private Collection<Field> resetAbort(
@@ -161,46 +255,32 @@ public final class FieldReader implements InfoGenerator
                 .forEach(computation -> computation.abort(file));
     }
 
-    private static void update(
-            final Collection<? extends FieldComputation> computations,
-            final byte[] buffer,
-            final File file) throws IOException
-    {
-        try (final var in = new FileInputStream(file))
-        {
-            final var active = new ArrayList<FieldComputation>(computations);
-            for (
-                    int bytesRead = in.read(buffer);
-                    bytesRead > 0;
-                    bytesRead = in.read(buffer))
-            {
-                for (int i = 0; i < active.size(); i++)
-                {
-                    if (!active.get(i).update(buffer, 0, bytesRead))
-                    {
-                        active.remove(i--);
-                        if (active.isEmpty())
-                        {
-                            return;
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private static void compute(
+    private void compute(
+            final File file,
             final Collection<Field> fields,
             final Map<? super String, ? super String> values)
                     throws IOException
     {
+        final FieldStore store = cache.store().orElse(null);
+        final var defined = new HashMap<String, String>();
         for (final var field : fields)
         {
             if (field.isComputed())
             {
-                values.put(field.name(), field.computation().finish());
+                final String value = field.computation().finish();
+                values.put(field.name(), value);
+                final String definition = field.computation().definition();
+                if (definition != null)
+                {
+                    defined.put(definition, value);
+                    if (store != null)
+                    {
+                        store.put(file, definition, value);
+                    }
+                }
             }
         }
+        cache.links().put(file, defined);
     }
 
 }
@@ -0,0 +1,42 @@
+package freecrumbs.finf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps computed field values between runs,
+ * so that files that have not changed need not be read again.
+ * Values are stored per file and
+ * {@link FieldComputation#definition() field definition}.
+ * A stored value is only returned
+ * if the file still has the size, modification time and file key
+ * it had when the value was stored.
+ * Implementations must be thread-safe.
+ *
+ * @author Tone Sommerland
+ */
+public interface FieldStore extends Closeable
+{
+    /**
+     * Returns the stored value of the given file and definition,
+     * or null if there is none,
+     * or if the file has changed since it was stored.
+     * @param file the file
+     * @param definition the definition of the field
+     */
+    public abstract String get(File file, String definition)
+            throws IOException;
+
+    /**
+     * Stores the value of the given file and definition,
+     * replacing any previous value.
+     * The value is not stored if the file's attributes cannot be read.
+     * @param file the file
+     * @param definition the definition of the field
+     * @param value the computed value
+     */
+    public abstract void put(File file, String definition, String value)
+            throws IOException;
+
+}
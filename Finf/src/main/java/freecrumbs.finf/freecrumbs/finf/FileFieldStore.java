@@ -0,0 +1,512 @@
+package freecrumbs.finf;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A field store in a single local file.
+ * The entries are loaded into memory when the store is opened,
+ * and new values are appended to the file as records.
+ * A record that replaces another leaves the old one behind,
+ * so the file is compacted on close
+ * once the replaced records outnumber the live ones,
+ * or if compaction was requested.
+ * A requested compaction also drops the entries of files
+ * that have been deleted or changed.
+ * A record cut short, as by a crash, is discarded on open.
+ * The file is locked while the store is open.
+ *
+ * @author Tone Sommerland
+ */
+public final class FileFieldStore implements FieldStore
+{
+    private static final int MAGIC = 0x46494e46;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Replaced records are not worth compacting away below this number.
+     */
+    private static final int MIN_GARBAGE = 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final DataOutputStream out;
+    private final boolean compact;
+    private final PrintStream statisticsOut;
+    private final Map<Key, Entry> entries;
+    private long records;
+    private long hits;
+    private long misses;
+    private long stale;
+    private long writes;
+
+    private FileFieldStore(
+            final Path path,
+            final FileChannel channel,
+            final FileLock lock,
+            final Map<Key, Entry> entries,
+            final long records,
+            final boolean compact,
+            final PrintStream statisticsOut)
+    {
+        this.path = path;
+        this.channel = channel;
+        this.lock = lock;
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel)));
+        this.entries = entries;
+        this.records = records;
+        this.compact = compact;
+        this.statisticsOut = statisticsOut;
+    }
+
+    /**
+     * Opens the store in the given file, creating the file if absent.
+     * @param path the store file
+     * @param compact whether or not to compact the file on close,
+     * dropping replaced records
+     * and the entries of deleted or changed files
+     * @param statisticsOut where to print statistics on close (nullable)
+     * @throws IOException
+     * if the file is not a store, or is locked by another process
+     */
+    public static FileFieldStore open(
+            final Path path,
+            final boolean compact,
+            final PrintStream statisticsOut) throws IOException
+    {
+        final FileChannel channel = FileChannel.open(
+                requireNonNull(path, "path"),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try
+        {
+            final FileLock lock = channel.tryLock();
+            if (lock == null)
+            {
+                throw new IOException("Cache file in use: " + path);
+            }
+            final var entries = new HashMap<Key, Entry>();
+            final long records = load(path, channel, entries);
+            return new FileFieldStore(
+                    path,
+                    channel,
+                    lock,
+                    entries,
+                    records,
+                    compact,
+                    statisticsOut);
+        }
+        catch (final IOException | RuntimeException ex)
+        {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public synchronized String get(final File file, final String definition)
+            throws IOException
+    {
+        final Entry entry = entries.get(new Key(file, definition));
+        if (entry == null)
+        {
+            misses++;
+            return null;
+        }
+        final BasicFileAttributes attributes = attributesOrNull(file);
+        if (attributes == null || !entry.matches(attributes))
+        {
+            stale++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    @Override
+    public synchronized void put(
+            final File file,
+            final String definition,
+            final String value) throws IOException
+    {
+        final BasicFileAttributes attributes = attributesOrNull(file);
+        if (attributes == null)
+        {
+            return;
+        }
+        final var key = new Key(file, definition);
+        final var entry = new Entry(attributes, value);
+        write(out, key, entry);
+        entries.put(key, entry);
+        records++;
+        writes++;
+    }
+
+    /**
+     * Flushes the new records, compacts the file if due,
+     * prints the statistics if requested,
+     * and releases the file.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        final long before = records;
+        Path compacted = null;
+        try
+        {
+            out.flush();
+            if (compact || records - entries.size()
+                    > Math.max(MIN_GARBAGE, entries.size()))
+            {
+                compacted = compacted(compact);
+            }
+        }
+        finally
+        {
+            try
+            {
+                lock.release();
+            }
+            finally
+            {
+                channel.close();
+            }
+        }
+        if (compacted != null)
+        {
+            replace(compacted);
+        }
+        if (statisticsOut != null)
+        {
+            statisticsOut.println(statistics(before));
+        }
+    }
+
+    private String statistics(final long recordsBefore)
+    {
+        final var statistics = new StringBuilder("cache: ")
+                .append(hits).append(" hits, ")
+                .append(misses + stale).append(" misses (")
+                .append(stale).append(" stale), ")
+                .append(writes).append(" writes, ")
+                .append(entries.size()).append(" entries");
+        if (records != recordsBefore)
+        {
+            statistics.append(", compacted from ")
+                .append(recordsBefore).append(" records");
+        }
+        return statistics.toString();
+    }
+
+    /**
+     * Writes the live entries to a temporary file
+     * that is to replace the store file.
+     * @param purge whether or not to also drop the entries
+     * of deleted or changed files
+     * @return the temporary file
+     */
+    private Path compacted(final boolean purge) throws IOException
+    {
+        if (purge)
+        {
+            final Iterator<Map.Entry<Key, Entry>> iterator
+                = entries.entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                final Map.Entry<Key, Entry> next = iterator.next();
+                final BasicFileAttributes attributes
+                    = attributesOrNull(new File(next.getKey().path));
+                if (attributes == null || !next.getValue().matches(attributes))
+                {
+                    iterator.remove();
+                }
+            }
+        }
+        final Path directory = path.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(
+                directory, path.getFileName().toString(), ".tmp");
+        try
+        {
+            try (
+                final var tempOut = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp)));
+            )
+            {
+                tempOut.writeInt(MAGIC);
+                tempOut.writeInt(VERSION);
+                for (final Map.Entry<Key, Entry> entry : entries.entrySet())
+                {
+                    write(tempOut, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        catch (final IOException | RuntimeException ex)
+        {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        return temp;
+    }
+
+    /**
+     * Replaces the store file with the given compacted one.
+     * This is done after the store file has been released,
+     * as some systems do not allow an open file to be replaced.
+     */
+    private void replace(final Path compacted) throws IOException
+    {
+        try
+        {
+            Files.move(
+                    compacted,
+                    path,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(compacted);
+        }
+        records = entries.size();
+    }
+
+    /**
+     * Loads the records of the store file into the given map,
+     * truncating a record cut short,
+     * and positions the channel for appending.
+     * @return the number of records
+     */
+    private static long load(
+            final Path path,
+            final FileChannel channel,
+            final Map<Key, Entry> entries) throws IOException
+    {
+        if (channel.size() == 0)
+        {
+            final var header = new DataOutputStream(
+                    Channels.newOutputStream(channel));
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.flush();
+            return 0;
+        }
+        final var in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0))));
+        try
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("Not a cache file: " + path);
+            }
+        }
+        catch (final EOFException ex)
+        {
+            throw new IOException("Not a cache file: " + path, ex);
+        }
+        final long size = channel.size();
+        long valid = HEADER_SIZE;
+        long records = 0;
+        while (true)
+        {
+            try
+            {
+                final var key = new Key(
+                        readString(in, size), readString(in, size));
+                final var entry = new Entry(
+                        in.readLong(),
+                        in.readLong(),
+                        readString(in, size),
+                        readString(in, size));
+                entries.put(key, entry);
+                valid += key.length() + entry.length();
+                records++;
+            }
+            catch (final EOFException ex)
+            {
+                break;
+            }
+        }
+        channel.truncate(valid);
+        channel.position(valid);
+        return records;
+    }
+
+    private static void write(
+            final DataOutputStream out,
+            final Key key,
+            final Entry entry) throws IOException
+    {
+        writeString(out, key.path);
+        writeString(out, key.definition);
+        out.writeLong(entry.size);
+        out.writeLong(entry.modified);
+        writeString(out, entry.fileKey);
+        writeString(out, entry.value);
+    }
+
+    private static void writeString(
+            final DataOutputStream out, final String s) throws IOException
+    {
+        final byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string of a record.
+     * A length that is out of bounds is taken for a record cut short.
+     * @param max the max length
+     */
+    private static String readString(
+            final DataInputStream in, final long max) throws IOException
+    {
+        final int length = in.readInt();
+        if (length < 0 || length > max)
+        {
+            throw new EOFException();
+        }
+        final var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * The number of bytes the given string takes up in a record.
+     */
+    private static long lengthOf(final String s)
+    {
+        return Integer.BYTES + s.getBytes(UTF_8).length;
+    }
+
+    private static BasicFileAttributes attributesOrNull(final File file)
+    {
+        try
+        {
+            return AttributedFile.attributesOf(file);
+        }
+        catch (final IOException ex)
+        {
+            return null;
+        }
+    }
+
+    private static String fileKeyOf(final BasicFileAttributes attributes)
+    {
+        final Object fileKey = attributes.fileKey();
+        return fileKey == null ? "" : fileKey.toString();
+    }
+
+    /**
+     * The absolute path of a file and the definition of a field.
+     */
+    private static final class Key
+    {
+        final String path;
+        final String definition;
+
+        Key(final File file, final String definition)
+        {
+            this(file.getAbsolutePath(), definition);
+        }
+
+        Key(final String path, final String definition)
+        {
+            this.path = requireNonNull(path, "path");
+            this.definition = requireNonNull(definition, "definition");
+        }
+
+        long length()
+        {
+            return lengthOf(path) + lengthOf(definition);
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            final var other = (Key)obj;
+            return path.equals(other.path)
+                    && definition.equals(other.definition);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return path.hashCode() * 31 + definition.hashCode();
+        }
+    }
+
+    /**
+     * A stored value and the identity of the file it was computed from.
+     */
+    private static final class Entry
+    {
+        final long size;
+        final long modified;
+        final String fileKey;
+        final String value;
+
+        Entry(
+                final long size,
+                final long modified,
+                final String fileKey,
+                final String value)
+        {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.value = requireNonNull(value, "value");
+        }
+
+        Entry(final BasicFileAttributes attributes, final String value)
+        {
+            this(
+                    attributes.size(),
+                    attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    fileKeyOf(attributes),
+                    value);
+        }
+
+        boolean matches(final BasicFileAttributes attributes)
+        {
+            return size == attributes.size()
+                    && modified == attributes.lastModifiedTime()
+                        .to(TimeUnit.NANOSECONDS)
+                    && fileKey.equals(fileKeyOf(attributes));
+        }
+
+        long length()
+        {
+            return 2 * Long.BYTES + lengthOf(fileKey) + lengthOf(value);
+        }
+    }
+
+}
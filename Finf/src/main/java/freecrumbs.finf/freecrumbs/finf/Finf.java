@@ -1,13 +1,10 @@
 package freecrumbs.finf;
 
-import static java.util.stream.Collectors.toList;
-
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 /**
  * Generates and prints
@@ -23,16 +20,30 @@ public final class Finf
     
     /**
      * Generates and prints file info.
+     * If the config has two or more jobs,
+     * the files are processed in parallel,
+     * but the output is the same as with sequential processing.
+     * The files are consumed lazily,
+     * and unordered output is printed as the files are processed.
+     * In duplicates mode, groups of identical files are printed instead.
      * @param files the input files
      * @param config the configuration
      * @param out the output destination
      */
     public static void output(
-            final Collection<? extends File> files,
+            final Stream<? extends File> files,
             final Config config,
             final PrintStream out) throws IOException
     {
-        if (config.order().isPresent())
+        if (config.dups())
+        {
+            Duplicates.output(files, config, out);
+        }
+        else if (config.jobs().size() > 1)
+        {
+            outputParallel(files, config, out);
+        }
+        else if (config.order().isPresent())
         {
             outputOrdered(files, config, out);
         }
@@ -41,67 +52,144 @@ public final class Finf
             outputUnordered(files, config, out);
         }
     }
+    
+    private static void outputParallel(
+            final Stream<? extends File> files,
+            final Config config,
+            final PrintStream out) throws IOException
+    {
+        if (config.order().isPresent())
+        {
+            try (final Sorting sorting = Sorting.of(config))
+            {
+                Jobs.run(
+                        files.iterator(),
+                        config.jobs(),
+                        config.pending(),
+                        Finf::infoIfAccepted,
+                        info -> addIfNonNull(info, sorting));
+                output(sorting.sorted(), config, out);
+            }
+        }
+        else if (config.count() != 0)
+        {
+            final int[] printed = {0};
+            Jobs.run(
+                    files.iterator(),
+                    config.jobs(),
+                    config.pending(),
+                    Finf::formattedIfAccepted,
+                    formatted -> print(formatted, config, out, printed));
+        }
+    }
+    
+    /**
+     * Returns null if the file is filtered out.
+     * The file is released from the generator when done.
+     */
+    static Info infoIfAccepted(final File file, final Config job)
+            throws IOException
+    {
+        try
+        {
+            if (acceptsInput(file, job))
+            {
+                return job.generator().infoAbout(file);
+            }
+            return null;
+        }
+        finally
+        {
+            job.generator().release(file);
+        }
+    }
+    
+    private static String formattedIfAccepted(
+            final File file, final Config job) throws IOException
+    {
+        final Info info = infoIfAccepted(file, job);
+        return info == null ? null : job.formatter().stringify(info);
+    }
+    
+    private static boolean addIfNonNull(
+            final Info info, final Sorting sorting) throws IOException
+    {
+        if (info != null)
+        {
+            sorting.add(info);
+        }
+        return true;
+    }
+    
+    /**
+     * Returns false when the count is reached.
+     */
+    private static boolean print(
+            final String formatted,
+            final Config config,
+            final PrintStream out,
+            final int[] printed)
+    {
+        if (formatted != null)
+        {
+            out.print(formatted);
+            printed[0]++;
+        }
+        return config.count() < 0 || printed[0] < config.count();
+    }
 
     private static void outputOrdered(
-            final Collection<? extends File> files,
+            final Stream<? extends File> files,
             final Config config,
             final PrintStream out) throws IOException
     {
-        final List<Info> items = filterAndSort(files, config);
-        output(items, config, out, info -> info);
+        try (final Sorting sorting = Sorting.of(config))
+        {
+            output(filterAndSort(files, config, sorting), config, out);
+        }
     }
 
     private static void outputUnordered(
-            final Collection<? extends File> files,
+            final Stream<? extends File> files,
             final Config config,
             final PrintStream out) throws IOException
     {
-        final List<File> items = filter(files, config);
-        output(
-                items,
-                config,
-                out,
-                config.generator()::infoAbout);
+        final Iterator<? extends File> iterator = files.iterator();
+        for (int i = 0; (config.count() < 0 || i < config.count())
+                && iterator.hasNext();)
+        {
+            final Info info = infoIfAccepted(iterator.next(), config);
+            if (info != null)
+            {
+                config.formatter().format(info, out);
+                i++;
+            }
+        }
     }
     
-    private static List<Info> filterAndSort(
-            final Collection<? extends File> files,
-            final Config config) throws IOException
+    private static Iterator<Info> filterAndSort(
+            final Stream<? extends File> files,
+            final Config config,
+            final Sorting sorting) throws IOException
     {
-        final var items = new ArrayList<Info>();
-        for (final File file : filter(files, config))
+        for (
+                final Iterator<? extends File> iterator = files.iterator();
+                iterator.hasNext();)
         {
-            items.add(config.generator().infoAbout(file));
+            addIfNonNull(infoIfAccepted(iterator.next(), config), sorting);
         }
-        return items.stream().sorted(config.order().get()).collect(toList());
-    }
-
-    private static List<File> filter(
-            final Collection<? extends File> files,
-            final Config config)
-    {
-        return files.stream()
-                .filter(file -> acceptsInput(file, config))
-                .collect(toList());
+        return sorting.sorted();
     }
     
-    @FunctionalInterface
-    private interface Informer<T>
-    {
-        public abstract Info provide(T item) throws IOException;
-    }
-
-    private static <T> void output(
-            final List<T> items,
+    private static void output(
+            final Iterator<Info> sorted,
             final Config config,
-            final PrintStream out,
-            final Informer<? super T> informer) throws IOException
+            final PrintStream out) throws IOException
     {
         for (int i = 0; (config.count() < 0 || i < config.count())
-                && i < items.size(); i++)
+                && sorted.hasNext(); i++)
         {
-            final Info info = informer.provide(items.get(i));
-            out.print(config.formatter().stringify(info));
+            config.formatter().format(sorted.next(), out);
         }
     }
     
@@ -0,0 +1,134 @@
+package freecrumbs.finf;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a sequence of info units.
+ * Each unit is encoded as its number of fields
+ * followed by a name index and a value per field.
+ * A field name is written in full the first time it occurs,
+ * and thereafter only by its index.
+ * Numbers are written as unsigned variable-length integers.
+ * An instance of this class
+ * either encodes or decodes a single sequence.
+ *
+ * @author Tone Sommerland
+ */
+final class InfoCodec
+{
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    InfoCodec()
+    {
+    }
+
+    /**
+     * Writes the next info unit of the sequence.
+     */
+    void write(final Info info, final DataOutput out) throws IOException
+    {
+        writeNumber(info.fieldNames().size(), out);
+        for (final String name : info.fieldNames())
+        {
+            final Integer index = indexes.get(name);
+            if (index == null)
+            {
+                writeNumber(names.size(), out);
+                writeString(name, out);
+                indexes.put(name, names.size());
+                names.add(name);
+            }
+            else
+            {
+                writeNumber(index, out);
+            }
+            writeString(info.value(name), out);
+        }
+    }
+
+    /**
+     * Reads the next info unit of the sequence.
+     * @return null at the end of the sequence
+     */
+    Info readOrNull(final DataInput in) throws IOException
+    {
+        final int size;
+        try
+        {
+            size = readNumber(in);
+        }
+        catch (final EOFException ex)
+        {
+            return null;
+        }
+        final var values = new HashMap<String, String>(size * 2);
+        for (int i = 0; i < size; i++)
+        {
+            final int index = readNumber(in);
+            if (index == names.size())
+            {
+                names.add(readString(in));
+            }
+            else if (index > names.size())
+            {
+                throw new IOException("Corrupt name index: " + index);
+            }
+            values.put(names.get(index), readString(in));
+        }
+        return new Info(values);
+    }
+
+    private static void writeString(final String str, final DataOutput out)
+            throws IOException
+    {
+        final byte[] bytes = str.getBytes(UTF_8);
+        writeNumber(bytes.length, out);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInput in) throws IOException
+    {
+        final var bytes = new byte[readNumber(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeNumber(final int number, final DataOutput out)
+            throws IOException
+    {
+        assert number >= 0;
+        int remaining = number;
+        while ((remaining & ~0x7f) != 0)
+        {
+            out.writeByte((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    private static int readNumber(final DataInput in) throws IOException
+    {
+        int number = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            final int b = in.readUnsignedByte();
+            number |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return number;
+            }
+        }
+        throw new IOException("Corrupt number");
+    }
+
+}
@@ -11,4 +11,16 @@ import java.io.IOException;
 public interface InfoFormatter
 {
     public abstract String stringify(Info info) throws IOException;
+    
+    /**
+     * Appends the formatted info to the given destination.
+     * @implSpec
+     * The default implementation appends the result of
+     * {@link #stringify(Info)}.
+     */
+    public default void format(final Info info, final Appendable out)
+            throws IOException
+    {
+        out.append(stringify(info));
+    }
 }
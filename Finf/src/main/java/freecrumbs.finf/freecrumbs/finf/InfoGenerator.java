@@ -12,5 +12,15 @@ import java.io.IOException;
 public interface InfoGenerator
 {
     public abstract Info infoAbout(final File file) throws IOException;
+    
+    /**
+     * Signals that info about the given file will not be requested again,
+     * so that any resources held for it may be freed.
+     * @implSpec
+     * The default implementation does nothing.
+     */
+    public default void release(final File file)
+    {
+    }
 
 }
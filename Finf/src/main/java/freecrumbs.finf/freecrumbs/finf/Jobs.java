@@ -0,0 +1,186 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processes input files on a pool of worker threads.
+ * Each worker borrows a job config for the duration of a task,
+ * so that no two tasks use the same job config concurrently.
+ * Results are delivered in input order.
+ *
+ * @author Tone Sommerland
+ */
+final class Jobs
+{
+    /**
+     * Default max number of pending tasks per job.
+     */
+    private static final int BACKLOG_PER_JOB = 4;
+
+    /**
+     * The pool of helper threads, shared by all readers.
+     */
+    private static final ExecutorService HELPERS
+        = Executors.newCachedThreadPool(Jobs::newDaemon);
+
+    /**
+     * Processes a single input file using a job config.
+     */
+    @FunctionalInterface
+    interface Task<R>
+    {
+        public abstract R perform(File file, Config job) throws IOException;
+    }
+
+    /**
+     * Receives the results in input order.
+     */
+    @FunctionalInterface
+    interface Sink<R>
+    {
+        /**
+         * Accepts the next result.
+         * @return {@code false} if no more results are wanted
+         */
+        public abstract boolean accept(R result) throws IOException;
+    }
+
+    private Jobs()
+    {
+    }
+
+    /**
+     * Performs the task on each of the given files.
+     * @param files the input files
+     * @param jobs the job configs (one per worker thread)
+     * @param pending the max number of files whose results
+     * have not yet been delivered
+     * ({@code < 1} for a default based on the number of jobs)
+     * @param task the task to perform per file
+     * @param sink receives the task results in input order
+     */
+    static <R> void run(
+            final Iterator<? extends File> files,
+            final List<Config> jobs,
+            final int pending,
+            final Task<? extends R> task,
+            final Sink<? super R> sink) throws IOException
+    {
+        final int maxPending
+            = pending < 1 ? jobs.size() * BACKLOG_PER_JOB : pending;
+        final BlockingQueue<Config> idle
+            = new ArrayBlockingQueue<>(jobs.size(), false, jobs);
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                jobs.size(), Jobs::newDaemon);
+        final Queue<Future<? extends R>> results = new ArrayDeque<>();
+        try
+        {
+            while (files.hasNext())
+            {
+                final File file = files.next();
+                results.add(executor.submit(() -> perform(task, file, idle)));
+                if (results.size() >= maxPending
+                        && !sink.accept(result(results.remove())))
+                {
+                    return;
+                }
+            }
+            while (!results.isEmpty())
+            {
+                if (!sink.accept(result(results.remove())))
+                {
+                    return;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <R> R perform(
+            final Task<R> task,
+            final File file,
+            final BlockingQueue<Config> idle)
+                    throws IOException, InterruptedException
+    {
+        final Config job = idle.take();
+        try
+        {
+            return task.perform(file, job);
+        }
+        finally
+        {
+            idle.add(job);
+        }
+    }
+
+    /**
+     * Waits for the result of the given future,
+     * rethrowing what the task threw.
+     */
+    static <R> R result(final Future<R> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (final InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+        catch (final ExecutionException ex)
+        {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException)cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the pool that readers run helper tasks on,
+     * such as the lanes of a fan-out.
+     * The pool is shared by all readers, whatever job they belong to,
+     * and is never shut down:
+     * its threads are daemons that end after a while of idleness.
+     */
+    static ExecutorService helpers()
+    {
+        return HELPERS;
+    }
+
+    /**
+     * A thread factory of daemon threads.
+     */
+    static Thread newDaemon(final Runnable runnable)
+    {
+        final var thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
@@ -0,0 +1,219 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computed values per physical file with several paths,
+ * such as hard links,
+ * so that the file is read only once.
+ * Files are identified by their
+ * {@link BasicFileAttributes#fileKey() file key},
+ * and a value is only returned
+ * while the file has the size and modification time
+ * it had when the value was put.
+ * Only values of
+ * {@link FieldComputation#definition() defined} computations
+ * are to be put, as they depend on nothing but the content.
+ * Values are only kept for files with a link count above one,
+ * or that are reached through a symbolic link,
+ * and only until as many paths to the file
+ * as it has links have been {@link #release(File) released}.
+ * Nothing tells that a file has symbolic links to it,
+ * so the values of a file reached through a symbolic link
+ * are only shared with the paths reached after the link.
+ * Once the capacity is reached,
+ * no more files are kept until others have been released,
+ * since those kept first are likely to be the first seen again.
+ * Long values are not kept,
+ * nor are the values of files without a file key.
+ * This class is thread-safe.
+ *
+ * @author Tone Sommerland
+ */
+final class LinkedValues
+{
+    private static final int MAX_VALUE_LENGTH = 1024;
+
+    private final Map<Object, FileValues> entries = new HashMap<>();
+    private final int capacity;
+
+    /**
+     * @param capacity the max number of files to keep values for
+     * (zero to keep none)
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    LinkedValues(final int capacity)
+    {
+        if (capacity < 0)
+        {
+            throw new IllegalArgumentException("capacity < 0: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the value put for the given definition
+     * under any path of the given file, or null if there is none.
+     */
+    String get(final File file, final String definition)
+    {
+        final BasicFileAttributes attributes = attributesOrNull(file);
+        if (attributes == null)
+        {
+            return null;
+        }
+        synchronized (entries)
+        {
+            final FileValues entry = entries.get(attributes.fileKey());
+            if (entry == null || !entry.matches(attributes))
+            {
+                return null;
+            }
+            return entry.values.get(definition);
+        }
+    }
+
+    /**
+     * Keeps the given values, by definition,
+     * for the other paths of the given file, if it has any.
+     */
+    void put(final File file, final Map<String, String> values)
+    {
+        final BasicFileAttributes attributes = attributesOrNull(file);
+        if (attributes == null || values.isEmpty())
+        {
+            return;
+        }
+        final Object key = attributes.fileKey();
+        synchronized (entries)
+        {
+            final FileValues entry = entries.get(key);
+            if (entry != null && entry.matches(attributes))
+            {
+                entry.putAll(values);
+                return;
+            }
+        }
+        final int paths = pathsOf(file);
+        if (paths < 2)
+        {
+            return;
+        }
+        synchronized (entries)
+        {
+            FileValues entry = entries.get(key);
+            if (entry == null || !entry.matches(attributes))
+            {
+                if (entry == null && entries.size() >= capacity)
+                {
+                    return;
+                }
+                entry = new FileValues(attributes, paths);
+                entries.put(key, entry);
+            }
+            entry.putAll(values);
+        }
+    }
+
+    /**
+     * Signals that a path to the given file is done with,
+     * and forgets the values of the file once all its paths are.
+     */
+    void release(final File file)
+    {
+        final BasicFileAttributes attributes = attributesOrNull(file);
+        if (attributes == null)
+        {
+            return;
+        }
+        synchronized (entries)
+        {
+            final FileValues entry = entries.get(attributes.fileKey());
+            if (entry != null && --entry.remaining <= 0)
+            {
+                entries.remove(attributes.fileKey());
+            }
+        }
+    }
+
+    /**
+     * Returns null if the file has no key or this instance keeps nothing.
+     */
+    private BasicFileAttributes attributesOrNull(final File file)
+    {
+        if (capacity == 0)
+        {
+            return null;
+        }
+        try
+        {
+            final BasicFileAttributes attributes
+                = AttributedFile.attributesOf(file);
+            return attributes.fileKey() == null ? null : attributes;
+        }
+        catch (final IOException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the expected number of paths to the given file:
+     * its link count,
+     * plus one if the path is a symbolic link.
+     * These are taken from the {@link AttributedFile snapshot},
+     * which is read if the file is not attributed.
+     */
+    private static int pathsOf(final File file)
+    {
+        try
+        {
+            final AttributedFile attributed = file instanceof AttributedFile
+                    ? (AttributedFile)file
+                    : AttributedFile.of(file.toPath());
+            return attributed.links() + (attributed.isSymbolicLink() ? 1 : 0);
+        }
+        catch (final IOException ex)
+        {
+            return 1;
+        }
+    }
+
+    private static final class FileValues
+    {
+        final long size;
+        final FileTime modified;
+        final Map<String, String> values = new HashMap<>(4);
+        int remaining;
+
+        FileValues(final BasicFileAttributes attributes, final int paths)
+        {
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime();
+            this.remaining = paths;
+        }
+
+        boolean matches(final BasicFileAttributes attributes)
+        {
+            return size == attributes.size()
+                    && modified.equals(attributes.lastModifiedTime());
+        }
+
+        void putAll(final Map<String, String> values)
+        {
+            values.forEach((definition, value) ->
+            {
+                if (value.length() <= MAX_VALUE_LENGTH)
+                {
+                    this.values.put(definition, value);
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,297 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Overlaps reading with computing.
+ * A thread of its own reads the file ahead into a ring of buffers,
+ * while the calling thread updates the computations
+ * one after another with each buffer read.
+ * A buffer is handed back to the reading thread
+ * as soon as the computations are done with it.
+ * The reading threads are the {@link Jobs#helpers() helper threads}
+ * shared by all readers,
+ * and the buffers are recycled from file to file
+ * through a pool that is likewise shared.
+ * Files no larger than a buffer are read sequentially.
+ *
+ * @author Tone Sommerland
+ */
+final class PrefetchContentReader implements ContentReader
+{
+    private static final int MAX_SPARE_CHUNKS = 64;
+
+    /**
+     * Chunks for later files, of any reader.
+     */
+    private static final BlockingQueue<Chunk> SPARE
+        = new ArrayBlockingQueue<>(MAX_SPARE_CHUNKS);
+
+    private final int bufferSize;
+    private final int buffers;
+
+    PrefetchContentReader(final int bufferSize, final int buffers)
+    {
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("bufferSize < 1: " + bufferSize);
+        }
+        if (buffers < 1)
+        {
+            throw new IllegalArgumentException("buffers < 1: " + buffers);
+        }
+        this.bufferSize = bufferSize;
+        this.buffers = buffers;
+    }
+
+    @Override
+    public void read(
+            final File file,
+            final Collection<? extends FieldComputation> computations)
+                    throws IOException
+    {
+        final var active = new ArrayList<FieldComputation>(computations);
+        if (active.isEmpty())
+        {
+            return;
+        }
+        try (final var in = new FileInputStream(file))
+        {
+            if (AttributedFile.sizeOf(file) <= bufferSize)
+            {
+                SequentialContentReader.update(
+                        in, new byte[bufferSize], active);
+            }
+            else
+            {
+                prefetch(in, active);
+            }
+        }
+    }
+
+    /**
+     * Returns once the reading thread is done with the stream,
+     * so that the caller may close it.
+     */
+    private void prefetch(
+            final FileInputStream in,
+            final List<FieldComputation> active) throws IOException
+    {
+        final var prefetcher = new Prefetcher(in, buffers);
+        for (int i = 0; i < buffers; i++)
+        {
+            final Chunk spare = SPARE.poll();
+            prefetcher.empty.add(
+                    spare == null || spare.bytes.length != bufferSize
+                        ? new Chunk(bufferSize) : spare);
+        }
+        final Future<Void> future = Jobs.helpers().submit(prefetcher::run);
+        Exception failure = null;
+        try
+        {
+            consume(prefetcher, active);
+        }
+        catch (final IOException | RuntimeException ex)
+        {
+            failure = ex;
+        }
+        try
+        {
+            await(future);
+        }
+        catch (final IOException | RuntimeException ex)
+        {
+            failure = failure == null ? ex : failure;
+        }
+        recycle(prefetcher.empty);
+        recycle(prefetcher.full);
+        if (failure instanceof IOException)
+        {
+            throw (IOException)failure;
+        }
+        else if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException)failure;
+        }
+    }
+
+    /**
+     * Waits for the prefetcher to return,
+     * even if the current thread is interrupted,
+     * as only then is it done with the stream and the chunks.
+     * The prefetcher is stopped at this point,
+     * so it returns as soon as it is done with any read in progress.
+     */
+    private static void await(final Future<Void> future) throws IOException
+    {
+        boolean interrupted = false;
+        while (!future.isDone())
+        {
+            try
+            {
+                future.get();
+            }
+            catch (final InterruptedException ex)
+            {
+                interrupted = true;
+            }
+            catch (final ExecutionException ex)
+            {
+                // Rethrown below.
+            }
+        }
+        try
+        {
+            Jobs.result(future);
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Keeps the chunks of the given queue for later files,
+     * as many as there is room for.
+     */
+    private static void recycle(final BlockingQueue<Chunk> chunks)
+    {
+        for (Chunk chunk = chunks.poll(); chunk != null; chunk = chunks.poll())
+        {
+            if (chunk != Prefetcher.STOP)
+            {
+                SPARE.offer(chunk);
+            }
+        }
+    }
+
+    private static void consume(
+            final Prefetcher prefetcher,
+            final List<FieldComputation> active) throws IOException
+    {
+        while (true)
+        {
+            final Chunk chunk;
+            try
+            {
+                chunk = prefetcher.full.take();
+            }
+            catch (final InterruptedException ex)
+            {
+                prefetcher.stop();
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            }
+            // The prefetcher is stopped before the chunk is returned,
+            // so that it does not read ahead with it.
+            try
+            {
+                if (chunk.length <= 0 || !SequentialContentReader.update(
+                        active, chunk.bytes, chunk.length))
+                {
+                    prefetcher.stop();
+                    return;
+                }
+            }
+            catch (final IOException | RuntimeException ex)
+            {
+                prefetcher.stop();
+                throw ex;
+            }
+            finally
+            {
+                prefetcher.empty.add(chunk);
+            }
+        }
+    }
+
+    /**
+     * A buffer of the ring.
+     */
+    private static final class Chunk
+    {
+        private final byte[] bytes;
+        private int length;
+
+        private Chunk(final int size)
+        {
+            this.bytes = new byte[size];
+        }
+    }
+
+    /**
+     * Reads a stream ahead into the empty chunks of a ring,
+     * and hands them over as full ones.
+     * The end of the stream is a chunk of no length.
+     * Stopping the prefetcher puts a stop chunk in the ring,
+     * so a stopped prefetcher does not wait forever,
+     * even if all the others are full.
+     */
+    private static final class Prefetcher
+    {
+        private static final Chunk STOP = new Chunk(0);
+
+        private final BlockingQueue<Chunk> empty;
+        private final BlockingQueue<Chunk> full = new LinkedBlockingQueue<>();
+        private final FileInputStream in;
+        private volatile boolean stopped;
+
+        private Prefetcher(final FileInputStream in, final int buffers)
+        {
+            this.in = in;
+            this.empty = new ArrayBlockingQueue<>(buffers + 1);
+        }
+
+        /**
+         * Makes this prefetcher return at the next chunk it takes.
+         * To be called once, by the consuming thread.
+         */
+        private void stop()
+        {
+            stopped = true;
+            empty.add(STOP);
+        }
+
+        private Void run() throws IOException, InterruptedException
+        {
+            while (true)
+            {
+                final Chunk chunk = empty.take();
+                if (stopped)
+                {
+                    empty.add(chunk);
+                    return null;
+                }
+                try
+                {
+                    chunk.length = in.read(chunk.bytes);
+                }
+                catch (final IOException ex)
+                {
+                    chunk.length = 0;
+                    full.add(chunk);
+                    throw ex;
+                }
+                full.add(chunk);
+                if (chunk.length <= 0)
+                {
+                    return null;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package freecrumbs.finf;
+
+/**
+ * A byte array per thread for copying content out of direct buffers.
+ * 
+ * @author Tone Sommerland
+ */
+final class Scratch
+{
+    private static final ThreadLocal<byte[]>
+    ARRAY = ThreadLocal.withInitial(() -> new byte[0]);
+
+    private Scratch()
+    {
+    }
+
+    /**
+     * Returns the calling thread's array,
+     * grown to at least the given length.
+     */
+    static byte[] array(final int length)
+    {
+        byte[] array = ARRAY.get();
+        if (array.length < length)
+        {
+            array = new byte[length];
+            ARRAY.set(array);
+        }
+        return array;
+    }
+
+}
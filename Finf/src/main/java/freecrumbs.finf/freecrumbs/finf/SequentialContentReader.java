@@ -0,0 +1,88 @@
+package freecrumbs.finf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Updates the computations one after another with each buffer read.
+ * A buffer is allocated per file,
+ * so that reads of different files never share one.
+ * 
+ * @author Tone Sommerland
+ */
+final class SequentialContentReader implements ContentReader
+{
+    private final int bufferSize;
+
+    SequentialContentReader(final int bufferSize)
+    {
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("bufferSize < 1: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void read(
+            final File file,
+            final Collection<? extends FieldComputation> computations)
+                    throws IOException
+    {
+        try (final var in = new FileInputStream(file))
+        {
+            update(in, new byte[bufferSize], computations);
+        }
+    }
+
+    /**
+     * Updates the computations with the content of the given input stream.
+     */
+    static void update(
+            final FileInputStream in,
+            final byte[] buffer,
+            final Collection<? extends FieldComputation> computations)
+                    throws IOException
+    {
+        final var active = new ArrayList<FieldComputation>(computations);
+        if (active.isEmpty())
+        {
+            return;
+        }
+        for (
+                int bytesRead = in.read(buffer);
+                bytesRead > 0;
+                bytesRead = in.read(buffer))
+        {
+            if (!update(active, buffer, bytesRead))
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Updates the active computations with the given input,
+     * removing those that require no more.
+     * @return {@code false} if none remain
+     */
+    static boolean update(
+            final List<FieldComputation> active,
+            final byte[] input,
+            final int length) throws IOException
+    {
+        for (int i = 0; i < active.size(); i++)
+        {
+            if (!active.get(i).update(input, 0, length))
+            {
+                active.remove(i--);
+            }
+        }
+        return !active.isEmpty();
+    }
+
+}
@@ -0,0 +1,507 @@
+package freecrumbs.finf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Accumulates info units and returns those to be output in sort order.
+ * Units that compare equal are returned in the order they were added.
+ * Closing a sorting releases any temporary files it has created.
+ *
+ * @author Tone Sommerland
+ */
+interface Sorting extends Closeable
+{
+    /**
+     * Returns a sorting according to the config's
+     * order, count and sort memory.
+     * If the count is zero or positive,
+     * only that many units are retained while accumulating.
+     * If the sort memory is positive,
+     * sorted runs are spilled to temporary files
+     * whenever the estimated size of the accumulated units exceeds it,
+     * which, with a count, happens if the retained units exceed it.
+     * @param config a config with an order
+     */
+    public static Sorting of(final Config config)
+    {
+        final Comparator<? super Info> order = config.order().get();
+        if (config.count() >= 0)
+        {
+            return new Top(order, config.count(), config.sortMemory());
+        }
+        else if (config.sortMemory() > 0)
+        {
+            return new Spilling(order, config.sortMemory());
+        }
+        return new Full(order);
+    }
+
+    public abstract void add(Info info) throws IOException;
+
+    /**
+     * Returns the retained info units in sort order.
+     * The returned iterator may throw {@link UncheckedIOException}.
+     */
+    public abstract Iterator<Info> sorted() throws IOException;
+    
+    @Override
+    public default void close() throws IOException
+    {
+    }
+
+    /**
+     * Keeps all units and sorts them at the end.
+     */
+    static final class Full implements Sorting
+    {
+        private final List<Info> items = new ArrayList<>();
+        private final Comparator<? super Info> order;
+
+        private Full(final Comparator<? super Info> order)
+        {
+            assert order != null;
+            this.order = order;
+        }
+
+        @Override
+        public void add(final Info info)
+        {
+            items.add(info);
+        }
+
+        @Override
+        public Iterator<Info> sorted()
+        {
+            items.sort(order);
+            return items.iterator();
+        }
+    }
+
+    /**
+     * Keeps the first {@code count} units in a bounded heap.
+     * The heap's head is the greatest of the retained units,
+     * which is evicted when a lesser unit arrives.
+     * The insertion sequence breaks ties
+     * to give the same result as a stable sort.
+     * The heap grows as units arrive,
+     * and if a sort memory is given
+     * and the retained units exceed it,
+     * they are handed over to a {@link Spilling} sorting
+     * in insertion order, along with all later units.
+     * The units evicted before then
+     * are preceded by at least {@code count} retained ones,
+     * so the first {@code count} units of the result are the same.
+     */
+    static final class Top implements Sorting
+    {
+        private static final int MAX_INITIAL_CAPACITY = 1024;
+
+        private final Comparator<? super Info> order;
+        private final Comparator<Ranked> ranking;
+        private final PriorityQueue<Ranked> heap;
+        private final int count;
+        private final long memory;
+        private long sequence;
+        private long estimate;
+        private Spilling overflow;
+
+        private Top(
+                final Comparator<? super Info> order,
+                final int count,
+                final long memory)
+        {
+            assert order != null;
+            assert count >= 0;
+            this.order = order;
+            this.ranking = Comparator
+                    .comparing((Ranked ranked) -> ranked.info, order)
+                    .thenComparingLong(ranked -> ranked.sequence);
+            this.heap = new PriorityQueue<>(
+                    Math.min(count, MAX_INITIAL_CAPACITY) + 1,
+                    ranking.reversed());
+            this.count = count;
+            this.memory = memory;
+        }
+
+        @Override
+        public void add(final Info info) throws IOException
+        {
+            if (overflow != null)
+            {
+                overflow.add(info);
+                return;
+            }
+            else if (count == 0)
+            {
+                return;
+            }
+            final var ranked = new Ranked(info, sequence++);
+            if (heap.size() < count)
+            {
+                heap.add(ranked);
+                estimate += Spilling.estimatedSize(info);
+            }
+            else if (ranking.compare(ranked, heap.peek()) < 0)
+            {
+                estimate -= Spilling.estimatedSize(heap.poll().info);
+                heap.add(ranked);
+                estimate += Spilling.estimatedSize(info);
+            }
+            if (memory > 0 && estimate > memory)
+            {
+                overflow();
+            }
+        }
+
+        @Override
+        public Iterator<Info> sorted() throws IOException
+        {
+            if (overflow != null)
+            {
+                return overflow.sorted();
+            }
+            final var ranks = new ArrayList<Ranked>(heap);
+            heap.clear();
+            ranks.sort(ranking);
+            return ranks.stream().map(ranked -> ranked.info).iterator();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (overflow != null)
+            {
+                overflow.close();
+            }
+        }
+
+        private void overflow() throws IOException
+        {
+            final var ranks = new ArrayList<Ranked>(heap);
+            heap.clear();
+            ranks.sort(Comparator.comparingLong(ranked -> ranked.sequence));
+            overflow = new Spilling(order, memory);
+            for (final Ranked ranked : ranks)
+            {
+                overflow.add(ranked.info);
+            }
+        }
+    }
+
+    /**
+     * An external merge sort.
+     * Stability is preserved by sorting each run stably
+     * and by letting earlier runs win ties during the merge.
+     * No more than a fixed number of runs are merged at a time,
+     * so that the number of open files is bounded:
+     * if there are more,
+     * consecutive runs are first merged into longer ones, in passes.
+     */
+    static final class Spilling implements Sorting
+    {
+        private static final int ENTRY_OVERHEAD = 64;
+        private static final int MAX_FAN_IN = 64;
+        
+        private final List<Info> items = new ArrayList<>();
+        private final List<File> runs = new ArrayList<>();
+        private final List<Closeable> readers = new ArrayList<>();
+        private final Comparator<? super Info> order;
+        private final long memory;
+        private long estimate;
+
+        private Spilling(
+                final Comparator<? super Info> order, final long memory)
+        {
+            assert order != null;
+            this.order = order;
+            this.memory = memory;
+        }
+
+        @Override
+        public void add(final Info info) throws IOException
+        {
+            items.add(info);
+            estimate += estimatedSize(info);
+            if (estimate > memory)
+            {
+                spill();
+            }
+        }
+
+        @Override
+        public Iterator<Info> sorted() throws IOException
+        {
+            items.sort(order);
+            if (runs.isEmpty())
+            {
+                return items.iterator();
+            }
+            while (runs.size() >= MAX_FAN_IN)
+            {
+                mergePass();
+            }
+            final PriorityQueue<Head> heads = heads(runs.size() + 1);
+            for (int run = 0; run < runs.size(); run++)
+            {
+                Head.addIfAny(run, runIterator(runs.get(run), readers), heads);
+            }
+            Head.addIfAny(runs.size(), items.iterator(), heads);
+            return new Merge(heads);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            for (final Closeable reader : readers)
+            {
+                reader.close();
+            }
+            readers.clear();
+            for (final File run : runs)
+            {
+                run.delete();
+            }
+            runs.clear();
+        }
+
+        private void spill() throws IOException
+        {
+            items.sort(order);
+            final File run = newRun();
+            runs.add(run);
+            write(items.iterator(), run);
+            items.clear();
+            estimate = 0;
+        }
+
+        /**
+         * Merges each group of consecutive runs into a single run.
+         */
+        private void mergePass() throws IOException
+        {
+            final var merged = new ArrayList<File>();
+            try
+            {
+                for (int from = 0; from < runs.size(); from += MAX_FAN_IN)
+                {
+                    final File run = newRun();
+                    merged.add(run);
+                    merge(runs.subList(
+                            from, Math.min(runs.size(), from + MAX_FAN_IN)),
+                            run);
+                }
+            }
+            catch (final IOException | RuntimeException ex)
+            {
+                merged.forEach(File::delete);
+                throw ex;
+            }
+            runs.forEach(File::delete);
+            runs.clear();
+            runs.addAll(merged);
+        }
+
+        private void merge(final List<File> group, final File target)
+                throws IOException
+        {
+            final var groupReaders = new ArrayList<Closeable>();
+            try
+            {
+                final PriorityQueue<Head> heads = heads(group.size());
+                for (int run = 0; run < group.size(); run++)
+                {
+                    Head.addIfAny(
+                            run,
+                            runIterator(group.get(run), groupReaders),
+                            heads);
+                }
+                write(new Merge(heads), target);
+            }
+            catch (final UncheckedIOException ex)
+            {
+                throw ex.getCause();
+            }
+            finally
+            {
+                for (final Closeable reader : groupReaders)
+                {
+                    reader.close();
+                }
+            }
+        }
+
+        private PriorityQueue<Head> heads(final int capacity)
+        {
+            return new PriorityQueue<>(
+                    capacity,
+                    Comparator.comparing((Head head) -> head.info, order)
+                        .thenComparingInt(head -> head.run));
+        }
+
+        private static File newRun() throws IOException
+        {
+            final File run = File.createTempFile("finf", ".run");
+            run.deleteOnExit();
+            return run;
+        }
+
+        private static void write(final Iterator<Info> infos, final File run)
+                throws IOException
+        {
+            final var codec = new InfoCodec();
+            try (
+                    final var out = new DataOutputStream(
+                            new BufferedOutputStream(
+                                    new FileOutputStream(run)));
+            )
+            {
+                while (infos.hasNext())
+                {
+                    codec.write(infos.next(), out);
+                }
+            }
+        }
+
+        /**
+         * Returns an iterator over the units of the given run.
+         * @param readers where to register the run's reader for closing
+         */
+        private static Iterator<Info> runIterator(
+                final File run,
+                final List<? super Closeable> readers) throws IOException
+        {
+            final var in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(run)));
+            readers.add(in);
+            final var codec = new InfoCodec();
+            return new Iterator<Info>()
+            {
+                private Info next = codec.readOrNull(in);
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next != null;
+                }
+
+                @Override
+                public Info next()
+                {
+                    if (next == null)
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    final Info current = next;
+                    try
+                    {
+                        next = codec.readOrNull(in);
+                    }
+                    catch (final IOException ex)
+                    {
+                        throw new UncheckedIOException(ex);
+                    }
+                    return current;
+                }
+            };
+        }
+
+        private static long estimatedSize(final Info info)
+        {
+            long size = ENTRY_OVERHEAD;
+            for (final String name : info.fieldNames())
+            {
+                size += ENTRY_OVERHEAD
+                        + name.length()
+                        + info.value(name).length();
+            }
+            return size;
+        }
+    }
+    
+    /**
+     * The current unit of a run in a merge.
+     */
+    static final class Head
+    {
+        final int run;
+        final Iterator<Info> rest;
+        final Info info;
+
+        private Head(final int run, final Iterator<Info> rest)
+        {
+            this.run = run;
+            this.rest = rest;
+            this.info = rest.next();
+        }
+        
+        static void addIfAny(
+                final int run,
+                final Iterator<Info> rest,
+                final PriorityQueue<? super Head> heads)
+        {
+            if (rest.hasNext())
+            {
+                heads.add(new Head(run, rest));
+            }
+        }
+    }
+    
+    /**
+     * A k-way merge of sorted runs.
+     */
+    static final class Merge implements Iterator<Info>
+    {
+        private final PriorityQueue<Head> heads;
+
+        private Merge(final PriorityQueue<Head> heads)
+        {
+            this.heads = heads;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Info next()
+        {
+            final Head head = heads.poll();
+            if (head == null)
+            {
+                throw new NoSuchElementException();
+            }
+            Head.addIfAny(head.run, head.rest, heads);
+            return head.info;
+        }
+    }
+
+    static final class Ranked
+    {
+        final Info info;
+        final long sequence;
+
+        Ranked(final Info info, final long sequence)
+        {
+            this.info = info;
+            this.sequence = sequence;
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package freecrumbs.finf;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A field store in the user-defined extended attributes of each file,
+ * so that the stored values travel with the files.
+ * Only digests are stored:
+ * the values of hashes, tree hashes and checksums.
+ * The attribute of a definition such as {@code hash:sha-256}
+ * is named {@code finf.hash.sha-256}
+ * (shown as {@code user.finf.hash.sha-256} on Linux),
+ * and holds the size and modification time of the file
+ * along with the value.
+ * Unlike a {@link FileFieldStore},
+ * the file key is not part of the identity,
+ * so that values survive copying
+ * that preserves attributes and timestamps.
+ * Storing is best effort:
+ * if the attribute cannot be written,
+ * as on a file system without extended attributes
+ * or a file without write permission,
+ * the value is simply not stored.
+ *
+ * @author Tone Sommerland
+ */
+public final class XattrFieldStore implements FieldStore
+{
+    private static final String NAME_PREFIX = "finf.";
+
+    private static final List<String> STORED_DEFINITIONS
+        = List.of("hash:", "treehash:", "checksum:");
+
+    private final PrintStream statisticsOut;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    /**
+     * Creates an extended-attribute store.
+     * @param statisticsOut where to print statistics on close (nullable)
+     */
+    public XattrFieldStore(final PrintStream statisticsOut)
+    {
+        this.statisticsOut = statisticsOut;
+    }
+
+    @Override
+    public String get(final File file, final String definition)
+            throws IOException
+    {
+        final UserDefinedFileAttributeView view = viewOrNull(definition, file);
+        if (view == null)
+        {
+            return null;
+        }
+        final String name = nameOf(definition);
+        final String stored;
+        try
+        {
+            // Fails if there is no such attribute.
+            final ByteBuffer buffer = ByteBuffer.allocate(view.size(name));
+            view.read(name, buffer);
+            stored = new String(buffer.array(), 0, buffer.position(), UTF_8);
+        }
+        catch (final IOException ex)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        final String identity = identityOrNull(file);
+        if (identity == null || !stored.startsWith(identity))
+        {
+            stale.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return stored.substring(identity.length());
+    }
+
+    @Override
+    public void put(
+            final File file,
+            final String definition,
+            final String value) throws IOException
+    {
+        final UserDefinedFileAttributeView view = viewOrNull(definition, file);
+        final String identity = identityOrNull(file);
+        if (view == null || identity == null)
+        {
+            return;
+        }
+        try
+        {
+            view.write(
+                    nameOf(definition),
+                    ByteBuffer.wrap((identity + value).getBytes(UTF_8)));
+            writes.incrementAndGet();
+        }
+        catch (final IOException ex)
+        {
+            failedWrites.incrementAndGet();
+        }
+    }
+
+    /**
+     * Prints the statistics if requested.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (statisticsOut != null)
+        {
+            statisticsOut.println("cache: "
+                    + hits + " hits, "
+                    + (misses.get() + stale.get()) + " misses ("
+                    + stale + " stale), "
+                    + writes + " writes ("
+                    + failedWrites + " failed)");
+        }
+    }
+
+    /**
+     * Returns the attribute view of the given file,
+     * or null if the definition is not stored
+     * or the file system does not support user-defined attributes.
+     */
+    private static UserDefinedFileAttributeView viewOrNull(
+            final String definition, final File file)
+    {
+        if (STORED_DEFINITIONS.stream().noneMatch(definition::startsWith))
+        {
+            return null;
+        }
+        return Files.getFileAttributeView(
+                file.toPath(), UserDefinedFileAttributeView.class);
+    }
+
+    private static String nameOf(final String definition)
+    {
+        return NAME_PREFIX + definition.replace(':', '.');
+    }
+
+    /**
+     * Returns the size and modification time of the given file
+     * as a prefix of the stored value,
+     * or null if the attributes cannot be read.
+     */
+    private static String identityOrNull(final File file)
+    {
+        try
+        {
+            final BasicFileAttributes attributes
+                = AttributedFile.attributesOf(file);
+            return attributes.size() + " "
+                    + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    + " ";
+        }
+        catch (final IOException ex)
+        {
+            return null;
+        }
+    }
+
+}
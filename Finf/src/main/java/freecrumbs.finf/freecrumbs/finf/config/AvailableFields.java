@@ -13,9 +13,13 @@ import java.util.NoSuchElementException;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import freecrumbs.finf.ContentReader;
 import freecrumbs.finf.Field;
+import freecrumbs.finf.FieldCache;
 import freecrumbs.finf.FieldReader;
+import freecrumbs.finf.field.Attributes;
 import freecrumbs.finf.field.BinaryToText;
+import freecrumbs.finf.field.Checksum;
 import freecrumbs.finf.field.Classification;
 import freecrumbs.finf.field.Command;
 import freecrumbs.finf.field.Eol;
@@ -25,6 +29,7 @@ import freecrumbs.finf.field.Modified;
 import freecrumbs.finf.field.Path;
 import freecrumbs.finf.field.Search;
 import freecrumbs.finf.field.Size;
+import freecrumbs.finf.field.TreeHash;
 import freecrumbs.finf.field.Whitespace;
 
 /**
@@ -40,6 +45,7 @@ import freecrumbs.finf.field.Whitespace;
 public final class AvailableFields
 {
     private static final int BUFFER_SIZE = 2048;
+    private static final String TREE_HASH_SUFFIX = "tree";
     
     /**
      * Field parameters.
@@ -54,6 +60,7 @@ public final class AvailableFields
         private final String[] hashAlgorithms;
         private final Search.Params[] searchParams;
         private final Command.Params[] commandParams;
+        private final long binaryLimit;
         
         private Params(
                 final String dateFormat,
@@ -61,7 +68,8 @@ public final class AvailableFields
                 final Classification.Heuristic classHeuristic,
                 final String[] hashAlgorithms,
                 final Search.Params[] searchParams,
-                final Command.Params[] commandParams)
+                final Command.Params[] commandParams,
+                final long binaryLimit)
         {
             this.dateFormat = dateFormat;
             this.locale = locale;
@@ -72,11 +80,12 @@ public final class AvailableFields
                 = searchParams == null ? new Search.Params[0] : searchParams;
             this.commandParams
                 = commandParams == null ? new Command.Params[0] : commandParams;
+            this.binaryLimit = binaryLimit;
         }
         
         public Params()
         {
-            this(null, null, null, null, null, null);
+            this(null, null, null, null, null, null, 0);
         }
         
         /**
@@ -90,7 +99,8 @@ public final class AvailableFields
                     this.classHeuristic,
                     this.hashAlgorithms,
                     this.searchParams,
-                    this.commandParams);
+                    this.commandParams,
+                    this.binaryLimit);
         }
         
         public Params withClassification(
@@ -102,7 +112,8 @@ public final class AvailableFields
                     requireNonNull(heuristic, "heuristic"),
                     this.hashAlgorithms,
                     this.searchParams,
-                    this.commandParams);
+                    this.commandParams,
+                    this.binaryLimit);
         }
         
         /**
@@ -118,7 +129,8 @@ public final class AvailableFields
                     this.classHeuristic,
                     algorithms.clone(),
                     this.searchParams,
-                    this.commandParams);
+                    this.commandParams,
+                    this.binaryLimit);
         }
         
         public Params withAnotherSearch(final Search.Params params)
@@ -131,7 +143,8 @@ public final class AvailableFields
                     Stream.concat(
                             Stream.of(this.searchParams), Stream.of(params))
                         .toArray(Search.Params[]::new),
-                    this.commandParams);
+                    this.commandParams,
+                    this.binaryLimit);
         }
         
         public Params withAnotherCommand(final Command.Params params)
@@ -144,7 +157,25 @@ public final class AvailableFields
                     this.searchParams,
                     Stream.concat(
                             Stream.of(this.commandParams), Stream.of(params))
-                        .toArray(Command.Params[]::new));
+                        .toArray(Command.Params[]::new),
+                    this.binaryLimit);
+        }
+        
+        /**
+         * Limits the binary-to-text fields to the given number of bytes.
+         * @param limit the max number of bytes to encode
+         * ({@code < 1} = unlimited)
+         */
+        public Params withBinaryLimit(final long limit)
+        {
+            return new Params(
+                    this.dateFormat,
+                    this.locale,
+                    this.classHeuristic,
+                    this.hashAlgorithms,
+                    this.searchParams,
+                    this.commandParams,
+                    limit);
         }
         
         private Field[] freshFields() throws IOException
@@ -153,7 +184,8 @@ public final class AvailableFields
                     List.of(Path.FIELD, Filename.FIELD, Size.FIELD));
             freshFields.addAll(List.of(Eol.fields()));
             freshFields.addAll(List.of(Whitespace.fields()));
-            freshFields.addAll(List.of(BinaryToText.fields()));
+            freshFields.addAll(List.of(BinaryToText.fields(binaryLimit)));
+            freshFields.addAll(List.of(Checksum.fields()));
             if (dateFormat != null)
             {
                 freshFields.addAll(timeFields(dateFormat, locale));
@@ -185,14 +217,27 @@ public final class AvailableFields
             return field -> names.add(field.name());
         }
         
+        /**
+         * The other file attributes come with the timestamps,
+         * as they are read at the same time.
+         */
         private static Collection<Field> timeFields(
                 final String dateFormat,
                 final Locale locale) throws IOException
         {
-            final Field modifiedField = dateFormat.isEmpty()
-                    ? Modified.field()
-                    : Modified.field(dateFormat, locale);
-            return List.of(modifiedField);
+            final var timeFields = new ArrayList<Field>();
+            if (dateFormat.isEmpty())
+            {
+                timeFields.add(Modified.field());
+                timeFields.addAll(List.of(Attributes.fields()));
+            }
+            else
+            {
+                timeFields.add(Modified.field(dateFormat, locale));
+                timeFields.addAll(
+                        List.of(Attributes.fields(dateFormat, locale)));
+            }
+            return timeFields;
         }
         
         private static Field classificationField(
@@ -213,17 +258,19 @@ public final class AvailableFields
                 }
                 final String trimmedAndLowerCase = trimmed.toLowerCase();
                 hashFields.add(Hash.field(trimmedAndLowerCase, trimmed));
+                hashFields.add(TreeHash.field(
+                        trimmedAndLowerCase + TREE_HASH_SUFFIX, trimmed));
             }
             return hashFields;
         }
         
+        /**
+         * The searches share a single pass over the content's lines.
+         */
         private static Collection<Field> searchFields(
                 final Search.Params[] params)
         {
-            return Stream.of(params)
-                    .map(Search::fields)
-                    .flatMap(Stream::of)
-                    .collect(toList());
+            return List.of(Search.fields(params));
         }
         
         private static Collection<Field> commandFields(
@@ -237,15 +284,18 @@ public final class AvailableFields
     }
     
     private final FieldReader mother;
+    private final ContentReader contentReader;
     private final Params params;
     private final Field[] fields;
     
     private AvailableFields(
             final FieldReader mother,
+            final ContentReader contentReader,
             final Params params) throws IOException
     {
         assert mother != null;
         this.mother = mother;
+        this.contentReader = requireNonNull(contentReader, "contentReader");
         this.params = params;
         this.fields = params.freshFields();
     }
@@ -256,7 +306,33 @@ public final class AvailableFields
      */
     public AvailableFields(final Params params) throws IOException
     {
-        this(FieldReader.of(2), params);
+        this(params, new FieldCache());
+    }
+    
+    /**
+     * Creates an instance that caches field values in the given cache.
+     * @param params field parameters
+     * @param cache the field-value cache
+     */
+    public AvailableFields(final Params params, final FieldCache cache)
+            throws IOException
+    {
+        this(params, cache, ContentReader.sequential(BUFFER_SIZE));
+    }
+    
+    /**
+     * Creates an instance that caches field values in the given cache,
+     * and whose readers read file content with the given content reader.
+     * @param params field parameters
+     * @param cache the field-value cache
+     * @param contentReader reads file content into the computations
+     */
+    public AvailableFields(
+            final Params params,
+            final FieldCache cache,
+            final ContentReader contentReader) throws IOException
+    {
+        this(FieldReader.of(cache, contentReader), contentReader, params);
     }
     
     /**
@@ -274,7 +350,7 @@ public final class AvailableFields
     public AvailableFields coCaching(final Params params)
             throws IOException
     {
-        return new AvailableFields(this.mother, params);
+        return new AvailableFields(this.mother, this.contentReader, params);
     }
 
     /**
@@ -294,7 +370,7 @@ public final class AvailableFields
     public FieldReader readerOf(final String... usedFieldNames)
     {
         return mother.coCaching(
-                BUFFER_SIZE,
+                contentReader,
                 Stream.of(usedFieldNames)
                     .distinct()
                     .map(this::field)
@@ -9,6 +9,7 @@ import java.util.Locale;
 import java.util.Properties;
 import java.util.stream.Stream;
 
+import freecrumbs.finf.FieldCache;
 import freecrumbs.finf.Info;
 import freecrumbs.finf.InfoFormatter;
 import freecrumbs.finf.InfoGenerator;
@@ -40,12 +41,20 @@ public final class Manifold
     private final FileFilter filter;
     private final Comparator<Info> order;
 
-    public Manifold(final Properties props, final Locale locale)
-            throws IOException
+    /**
+     * Creates the manifold.
+     * @param props the properties
+     * @param locale the locale
+     * @param cache the cache of the field values
+     */
+    public Manifold(
+            final Properties props,
+            final Locale locale,
+            final FieldCache cache) throws IOException
     {
         this.formatter = Settings.output(props);
         final AvailableFields availableFields = Settings.availableFields(
-                props, locale);
+                props, locale, cache);
         final OrderParser orderParser = Settings.orderParser(
                 props, availableFields.names());
         this.order = orderParser.orderOrNull();
@@ -4,13 +4,17 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
 import freecrumbs.finf.Config;
 import freecrumbs.finf.ConfigLoader;
+import freecrumbs.finf.FieldCache;
+import freecrumbs.finf.FieldStore;
 
 /**
  * Loads configuration from a properties file.
@@ -23,6 +27,7 @@ import freecrumbs.finf.ConfigLoader;
  * filter=.*\.html
  * order=filename size asc modified desc
  * count=100
+ * jobs=4
  * }
  * </pre>
  * Alternative filter &ndash; format pattern:
@@ -57,13 +62,63 @@ public final class PropertiesConfigLoader implements ConfigLoader
     public Config loadConfig(final Reader reader) throws IOException
     {
         final Properties props = properties(reader);
-        final var manifold = new Manifold(props, locale);
+        final FieldStore store = Settings.storeOrNull(props);
+        try
+        {
+            final var cache = new FieldCache(
+                    FieldCache.DEFAULT_CAPACITY,
+                    Settings.cacheLinks(props),
+                    store);
+            return builder(props, cache)
+                    .setJobs(jobs(props, cache))
+                    .setStore(store)
+                    .build();
+        }
+        catch (final IOException | RuntimeException ex)
+        {
+            if (store != null)
+            {
+                store.close();
+            }
+            throw ex;
+        }
+    }
+    
+    private Config.Builder builder(
+            final Properties props,
+            final FieldCache cache) throws IOException
+    {
+        final var manifold = new Manifold(props, locale, cache);
         return new Config.Builder(
                 manifold.generator(), manifold.formatter())
                     .setFilter(manifold.filterOrNull())
                     .setOrder(manifold.orderOrNull())
                     .setCount(Settings.count(props))
-                    .build();
+                    .setSortMemory(Settings.orderMemory(props))
+                    .setPending(Settings.pending(props))
+                    .setDups(Settings.isDups(props));
+    }
+    
+    /**
+     * Each job gets its own manifold,
+     * as info generators and filters are not thread-safe.
+     * The field cache, on the other hand, is shared.
+     */
+    private List<Config> jobs(
+            final Properties props,
+            final FieldCache cache) throws IOException
+    {
+        final int count = Settings.jobs(props);
+        if (count < 2)
+        {
+            return List.of();
+        }
+        final var jobs = new ArrayList<Config>(count);
+        for (int i = 0; i < count; i++)
+        {
+            jobs.add(builder(props, cache).build());
+        }
+        return jobs;
     }
 
     private Properties properties(final Reader reader) throws IOException
@@ -1,12 +1,19 @@
 package freecrumbs.finf.config;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.stream.Stream;
 
+import freecrumbs.finf.ContentReader;
+import freecrumbs.finf.FieldCache;
+import freecrumbs.finf.FieldStore;
+import freecrumbs.finf.FileFieldStore;
+import freecrumbs.finf.XattrFieldStore;
 import freecrumbs.finf.config.command.CommandParser;
 import freecrumbs.finf.config.filter.FilterParser;
 import freecrumbs.finf.config.order.OrderParser;
@@ -30,11 +37,57 @@ public final class Settings
     private static final String ORDER_KEY                = "order";
     private static final String COUNT_KEY                = "count";
     private static final String VAR_KEY                  = "var";
+    private static final String JOBS_KEY                 = "jobs";
+    private static final String JOBS_IO_KEY              = "jobs.io";
+    private static final String JOBS_PENDING_KEY         = "jobs.pending";
+    private static final String ORDER_MEMORY_KEY         = "order.memory";
+    private static final String READ_FANOUT_KEY          = "read.fanout";
+    private static final String READ_NIO_KEY             = "read.nio";
+    private static final String READ_DIRECT_KEY          = "read.direct";
+    private static final String READ_PREFETCH_KEY        = "read.prefetch";
+    private static final String READ_BUFFER_KEY          = "read.buffer";
+    private static final String READ_MMAP_KEY            = "read.mmap";
+    private static final String DUPS_KEY                 = "dups";
+    private static final String CACHE_FILE_KEY           = "cache.file";
+    private static final String CACHE_XATTR_KEY          = "cache.xattr";
+    private static final String CACHE_STATS_KEY          = "cache.stats";
+    private static final String CACHE_COMPACT_KEY        = "cache.compact";
+    private static final String CACHE_LINKS_KEY          = "cache.links";
+    private static final String BINARY_LIMIT_KEY         = "binary.limit";
     
     private static final String DEFAULT_HASH_ALGORITHMS  = "md5 sha-1 sha-256";
     private static final String DEFAULT_DATE_FORMAT      = "yyyy-MM-dd HH:mm";
     private static final String DEFAULT_PREFILTER        = "1";
     private static final String DEFAULT_OUTPUT           = "<filename><eol>";
+    private static final String DEFAULT_DUPS_OUTPUT
+        = "<path><filename><eol>";
+    private static final String DEFAULT_JOBS             = "1";
+    private static final String DEFAULT_JOBS_IO          = "0";
+    private static final String DEFAULT_JOBS_PENDING     = "0";
+    private static final String DEFAULT_ORDER_MEMORY     = "0";
+    private static final String DEFAULT_READ_FANOUT      = "0";
+    private static final String DEFAULT_READ_NIO         = "0";
+    private static final String DEFAULT_READ_DIRECT      = "0";
+    private static final String DEFAULT_READ_PREFETCH    = "0";
+    private static final String DEFAULT_READ_BUFFER      = "0";
+    private static final String DEFAULT_READ_MMAP        = "0";
+    private static final String DEFAULT_DUPS             = "0";
+    private static final String DEFAULT_CACHE_FILE       = "";
+    private static final String DEFAULT_CACHE_XATTR      = "0";
+    private static final String DEFAULT_CACHE_STATS      = "0";
+    private static final String DEFAULT_CACHE_COMPACT    = "0";
+    private static final String DEFAULT_CACHE_LINKS      = "4096";
+    private static final String DEFAULT_BINARY_LIMIT     = "0";
+    
+    private static final long   MEGABYTE                 = 1024 * 1024;
+    private static final int    KILOBYTE                 = 1024;
+    private static final int    BUFFER_SIZE              = 2048;
+    private static final int    FANOUT_BUFFER_SIZE       = 64 * 1024;
+    private static final int    NIO_BUFFER_SIZE          = 64 * 1024;
+    private static final int    PREFETCH_BUFFER_SIZE     = 64 * 1024;
+    private static final int    PREFETCH_BUFFERS         = 4;
+    private static final int    FANOUT_BUFFERS           = 8;
+    private static final int    IO_JOBS_PER_PROCESSOR    = 16;
     
     private static final char   KEYSEP                   = '.';
     private static final String FILTER_KEY_PREFIX        = FILTER_KEY + KEYSEP;
@@ -47,15 +100,129 @@ public final class Settings
     }
     
     public static AvailableFields availableFields(
-            final Properties props, final Locale locale) throws IOException
+            final Properties props,
+            final Locale locale,
+            final FieldCache cache) throws IOException
     {
         final String dateFormat = props.getProperty(
                 DATE_FORMAT_KEY, DEFAULT_DATE_FORMAT);
         final var params = new AvailableFields.Params()
                 .withTime(dateFormat, locale)
                 .withClassification(Classification.Heuristic.DEFAULT)
-                .withHash(hashAlgorithms(props));
-        return withVarFields(new AvailableFields(params), props);
+                .withHash(hashAlgorithms(props))
+                .withBinaryLimit(binaryLimit(props));
+        return withVarFields(
+                availableFields(params, cache, props), props);
+    }
+    
+    private static AvailableFields availableFields(
+            final AvailableFields.Params params,
+            final FieldCache cache,
+            final Properties props) throws IOException
+    {
+        final int bufferSize = readBufferSize(props);
+        if (isTrue(props.getProperty(READ_FANOUT_KEY, DEFAULT_READ_FANOUT)))
+        {
+            return new AvailableFields(
+                    params,
+                    cache,
+                    ContentReader.fanOut(
+                            bufferSize == 0 ? FANOUT_BUFFER_SIZE : bufferSize,
+                            FANOUT_BUFFERS));
+        }
+        else if (isTrue(
+                props.getProperty(READ_DIRECT_KEY, DEFAULT_READ_DIRECT)))
+        {
+            return new AvailableFields(
+                    params,
+                    cache,
+                    ContentReader.direct(
+                            bufferSize == 0 ? NIO_BUFFER_SIZE : bufferSize));
+        }
+        else if (isTrue(props.getProperty(READ_NIO_KEY, DEFAULT_READ_NIO)))
+        {
+            return new AvailableFields(
+                    params,
+                    cache,
+                    ContentReader.channel(
+                            bufferSize == 0 ? NIO_BUFFER_SIZE : bufferSize,
+                            megabytes(
+                                    props, READ_MMAP_KEY, DEFAULT_READ_MMAP)));
+        }
+        else if (isTrue(
+                props.getProperty(READ_PREFETCH_KEY, DEFAULT_READ_PREFETCH)))
+        {
+            return new AvailableFields(
+                    params,
+                    cache,
+                    ContentReader.prefetch(
+                            bufferSize == 0 ? PREFETCH_BUFFER_SIZE : bufferSize,
+                            PREFETCH_BUFFERS));
+        }
+        return new AvailableFields(
+                params,
+                cache,
+                ContentReader.sequential(
+                        bufferSize == 0 ? BUFFER_SIZE : bufferSize));
+    }
+    
+    /**
+     * Returns the read-buffer size in bytes.
+     * The setting is in kilobytes, and zero means the reader's default.
+     * @throws IOException if the setting is negative or too large
+     */
+    private static int readBufferSize(final Properties props)
+            throws IOException
+    {
+        final long kilobytes
+            = nonNegative(props, READ_BUFFER_KEY, DEFAULT_READ_BUFFER);
+        if (kilobytes > Integer.MAX_VALUE / KILOBYTE)
+        {
+            throw new IOException("read.buffer too large: " + kilobytes);
+        }
+        return (int)kilobytes * KILOBYTE;
+    }
+    
+    /**
+     * Returns the number of bytes in a setting that is in megabytes.
+     * @throws IOException if the setting is negative or too large
+     */
+    private static long megabytes(
+            final Properties props,
+            final String key,
+            final String defaultValue) throws IOException
+    {
+        final long megabytes = nonNegative(props, key, defaultValue);
+        if (megabytes > Long.MAX_VALUE / MEGABYTE)
+        {
+            throw new IOException(key + " too large: " + megabytes);
+        }
+        return megabytes * MEGABYTE;
+    }
+    
+    /**
+     * Returns the value of a setting that must be a non-negative number.
+     * @throws IOException if the setting is negative or not a number
+     */
+    private static long nonNegative(
+            final Properties props,
+            final String key,
+            final String defaultValue) throws IOException
+    {
+        final long value;
+        try
+        {
+            value = Long.parseLong(props.getProperty(key, defaultValue));
+        }
+        catch (final NumberFormatException ex)
+        {
+            throw new IOException(ex);
+        }
+        if (value < 0)
+        {
+            throw new IOException(key + " < 0: " + value);
+        }
+        return value;
     }
     
     private static AvailableFields withVarFields(
@@ -88,8 +255,10 @@ public final class Settings
 
     public static TokenFormatter output(final Properties props)
     {
+        final String defaultOutput
+            = isDups(props) ? DEFAULT_DUPS_OUTPUT : DEFAULT_OUTPUT;
         return new TokenFormatter(
-                props.getProperty(OUTPUT_KEY, DEFAULT_OUTPUT));
+                props.getProperty(OUTPUT_KEY, defaultOutput));
     }
 
     public static int count(final Properties props) throws IOException
@@ -104,6 +273,76 @@ public final class Settings
         }
     }
     
+    /**
+     * Returns the number of parallel jobs.
+     * A setting of zero means one job per available processor,
+     * or several if the jobs are I/O bound.
+     * @throws IOException if the setting is negative or not a number
+     */
+    public static int jobs(final Properties props) throws IOException
+    {
+        final int jobs;
+        try
+        {
+            jobs = Integer.parseInt(props.getProperty(JOBS_KEY, DEFAULT_JOBS));
+        }
+        catch (final NumberFormatException ex)
+        {
+            throw new IOException(ex);
+        }
+        if (jobs < 0)
+        {
+            throw new IOException("jobs < 0: " + jobs);
+        }
+        if (jobs > 0)
+        {
+            return jobs;
+        }
+        else if (isTrue(props.getProperty(JOBS_IO_KEY, DEFAULT_JOBS_IO)))
+        {
+            return Runtime.getRuntime().availableProcessors()
+                    * IO_JOBS_PER_PROCESSOR;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * Returns the max number of files in flight during parallel processing.
+     * Zero means a default based on the number of jobs.
+     * @throws IOException if the setting is negative or too large
+     */
+    public static int pending(final Properties props) throws IOException
+    {
+        final long pending
+            = nonNegative(props, JOBS_PENDING_KEY, DEFAULT_JOBS_PENDING);
+        if (pending > Integer.MAX_VALUE)
+        {
+            throw new IOException("jobs.pending too large: " + pending);
+        }
+        return (int)pending;
+    }
+    
+    /**
+     * Returns the sort memory in bytes.
+     * The setting is in megabytes, and zero means unlimited.
+     * @throws IOException if the setting is negative or too large
+     */
+    public static long orderMemory(final Properties props) throws IOException
+    {
+        return megabytes(props, ORDER_MEMORY_KEY, DEFAULT_ORDER_MEMORY);
+    }
+    
+    /**
+     * Returns the max number of bytes to encode
+     * in the binary-to-text fields.
+     * Zero means unlimited.
+     * @throws IOException if the setting is negative or not a number
+     */
+    private static long binaryLimit(final Properties props) throws IOException
+    {
+        return nonNegative(props, BINARY_LIMIT_KEY, DEFAULT_BINARY_LIMIT);
+    }
+    
     public static OrderParser orderParser(
             final Properties props, final String[] availableFieldNames)
     {
@@ -132,6 +371,69 @@ public final class Settings
         return isTrue(props.getProperty(PREFILTER_KEY, DEFAULT_PREFILTER));
     }
     
+    public static boolean isDups(final Properties props)
+    {
+        return isTrue(props.getProperty(DUPS_KEY, DEFAULT_DUPS));
+    }
+    
+    /**
+     * Opens the field store of the cache settings:
+     * the cache file if there is one,
+     * or else extended attributes if requested.
+     * Statistics are printed to standard error if requested.
+     * @return null if there is no store
+     * @throws IOException if both a cache file and extended attributes
+     * are requested
+     */
+    public static FieldStore storeOrNull(final Properties props)
+            throws IOException
+    {
+        final String file
+            = props.getProperty(CACHE_FILE_KEY, DEFAULT_CACHE_FILE);
+        final boolean xattr = isTrue(
+                props.getProperty(CACHE_XATTR_KEY, DEFAULT_CACHE_XATTR));
+        final PrintStream statisticsOut
+            = isTrue(props.getProperty(CACHE_STATS_KEY, DEFAULT_CACHE_STATS))
+                ? System.err : null;
+        if (!file.isEmpty() && xattr)
+        {
+            throw new IOException(
+                    CACHE_FILE_KEY + " and " + CACHE_XATTR_KEY
+                    + " are mutually exclusive");
+        }
+        else if (!file.isEmpty())
+        {
+            return FileFieldStore.open(
+                    Path.of(file),
+                    isTrue(props.getProperty(
+                            CACHE_COMPACT_KEY, DEFAULT_CACHE_COMPACT)),
+                    statisticsOut);
+        }
+        else if (xattr)
+        {
+            return new XattrFieldStore(statisticsOut);
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the max number of files with several paths,
+     * such as hard links,
+     * to share computed values between the paths of at a time.
+     * Zero means none.
+     * @throws IOException if the setting is negative or too large
+     */
+    public static int cacheLinks(final Properties props) throws IOException
+    {
+        final long links
+            = nonNegative(props, CACHE_LINKS_KEY, DEFAULT_CACHE_LINKS);
+        if (links > Integer.MAX_VALUE)
+        {
+            throw new IOException("cache.links too large: " + links);
+        }
+        return (int)links;
+    }
+    
     /**
      * Returns an array containing non-empty, trimmed
      * space/tab-delimited substrings of the given string.
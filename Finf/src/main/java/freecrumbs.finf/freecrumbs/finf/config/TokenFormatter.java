@@ -3,6 +3,9 @@ package freecrumbs.finf.config;
 import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import freecrumbs.finf.Info;
@@ -11,12 +14,25 @@ import freecrumbs.finf.InfoFormatter;
 /**
  * An info formatter that replaces tokens on the form
  * <field-name> with the corresponding field value.
+ * Tokens with names of fields not in the info are left as is.
+ * The format is compiled once
+ * into a sequence of literal runs separated by tokens.
  * 
  * @author Tone Sommerland
  */
 public final class TokenFormatter implements InfoFormatter
 {
-    private final String format;
+    private static final char TOKEN_START = '<';
+    private static final char TOKEN_END   = '>';
+    
+    /**
+     * One more than the number of tokens.
+     * Each token is preceded by the literal at the same index.
+     */
+    private final String[] literals;
+    private final String[] tokenNames;
+    private final Set<String> usedNames;
+    private final int literalLength;
 
     /**
      * Creates a new token-based info-formatter.
@@ -24,7 +40,13 @@ public final class TokenFormatter implements InfoFormatter
      */
     public TokenFormatter(final String format)
     {
-        this.format = requireNonNull(format, "format");
+        final var literals = new ArrayList<String>();
+        final var tokenNames = new ArrayList<String>();
+        compile(requireNonNull(format, "format"), literals, tokenNames);
+        this.literals = literals.toArray(String[]::new);
+        this.tokenNames = tokenNames.toArray(String[]::new);
+        this.usedNames = Set.copyOf(tokenNames);
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
     }
     
     /**
@@ -33,36 +55,63 @@ public final class TokenFormatter implements InfoFormatter
     public String[] usedFieldNames(final String[] availableFieldNames)
     {
         return Stream.of(availableFieldNames)
-                .filter(name -> format.contains(token(name)))
+                .filter(usedNames::contains)
                 .toArray(String[]::new);
     }
     
     @Override
     public String stringify(final Info info) throws IOException
     {
-        String result = format;
-        for (final String fieldName : info.fieldNames())
+        final var result = new StringBuilder(literalLength);
+        format(info, result);
+        return result.toString();
+    }
+    
+    @Override
+    public void format(final Info info, final Appendable out)
+            throws IOException
+    {
+        out.append(literals[0]);
+        for (int i = 0; i < tokenNames.length; i++)
         {
-            result = replaceTokensWithValues(result, fieldName, info);
+            final String name = tokenNames[i];
+            if (info.fieldNames().contains(name))
+            {
+                out.append(info.value(name));
+            }
+            else
+            {
+                out.append(TOKEN_START).append(name).append(TOKEN_END);
+            }
+            out.append(literals[i + 1]);
         }
-        return result;
     }
     
-    private static String replaceTokensWithValues(
+    /**
+     * A token ends at a token-end char
+     * and starts at the closest preceding token-start char.
+     */
+    private static void compile(
             final String format,
-            final String fieldName,
-            final Info info) throws IOException
+            final List<? super String> literals,
+            final List<? super String> tokenNames)
     {
-        final String token = token(fieldName);
-        if (format.contains(token))
+        int literalStart = 0;
+        int cursor = 0;
+        for (
+                int end = format.indexOf(TOKEN_END);
+                end >= 0;
+                end = format.indexOf(TOKEN_END, cursor))
         {
-            return format.replace(token, info.value(fieldName));
+            final int start = format.lastIndexOf(TOKEN_START, end);
+            if (start >= cursor)
+            {
+                literals.add(format.substring(literalStart, start));
+                tokenNames.add(format.substring(start + 1, end));
+                literalStart = end + 1;
+            }
+            cursor = end + 1;
         }
-        return format;
-    }
-
-    private static String token(final String fieldName)
-    {
-        return "<" + fieldName + ">";
+        literals.add(format.substring(literalStart));
     }
 }
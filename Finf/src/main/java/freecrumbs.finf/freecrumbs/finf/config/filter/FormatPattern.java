@@ -2,14 +2,8 @@ package freecrumbs.finf.config.filter;
 
 import static java.util.Objects.requireNonNull;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.regex.Pattern;
 
-import freecrumbs.finf.Info;
-import freecrumbs.finf.InfoFormatter;
-import freecrumbs.finf.InfoGenerator;
-
 /**
  * Instances of this class are used by
  * {@link freecrumbs.finf.config.filter.FormatPatternFilter}
@@ -36,15 +30,11 @@ public final class FormatPattern
     }
     
     /**
-     * Whether to include or exclude the given file.
+     * Whether to include or exclude the file with the given formatted info.
      */
-    public boolean includes(
-            final File file,
-            final InfoGenerator generator,
-            final InfoFormatter formatter) throws IOException
+    public boolean includes(final CharSequence formatted)
     {
-        final Info info = generator.infoAbout(file);
-        return pattern.matcher(formatter.stringify(info)).matches() == include;
+        return pattern.matcher(formatted).matches() == include;
     }
     
 }
@@ -13,6 +13,9 @@ import freecrumbs.finf.InfoGenerator;
 /**
  * This file filter includes or excludes files based on
  * regex patterns applied to formatted info for each file.
+ * The info is formatted once per file
+ * into a buffer that is reused between files,
+ * so instances of this class are not thread-safe.
  * 
  * @author Tone Sommerland
  */
@@ -24,6 +27,7 @@ public final class FormatPatternFilter implements FileFilter
     private final InfoGenerator generator;
     private final InfoFormatter formatter;
     private final FormatPattern[] formatPatterns;
+    private final StringBuilder formatted = new StringBuilder();
 
     /**
      * Creates a new format pattern file filter.
@@ -57,9 +61,11 @@ public final class FormatPatternFilter implements FileFilter
 
     private boolean includes(final File file) throws IOException
     {
+        formatted.setLength(0);
+        formatter.format(generator.infoAbout(file), formatted);
         for (final FormatPattern formatPattern : formatPatterns)
         {
-            if (!formatPattern.includes(file, generator, formatter))
+            if (!formatPattern.includes(formatted))
             {
                 return false;
             }
@@ -0,0 +1,178 @@
+package freecrumbs.finf.field;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Locale;
+import java.util.function.Function;
+
+import freecrumbs.finf.AttributedFile;
+import freecrumbs.finf.Field;
+
+/**
+ * File-attribute fields.
+ * The values are taken from the
+ * {@link AttributedFile attribute snapshot} if there is one.
+ * These are the fields:
+ * <ul>
+ * <li>created: creation timestamp</li>
+ * <li>accessed: last-access timestamp</li>
+ * <li>filekey: the key that uniquely identifies the file,
+ * such as device and inode (empty if not available)</li>
+ * <li>owner: the name of the owner</li>
+ * <li>permissions: POSIX permissions, such as {@code rwxr-x---}
+ * (empty if not available)</li>
+ * </ul>
+ * If the attributes cannot be read,
+ * as with a broken symbolic link,
+ * the timestamps are zero and the other values are empty.
+ *
+ * @author Tone Sommerland
+ */
+public final class Attributes
+{
+    private static final String CREATED_FIELD_NAME     = "created";
+    private static final String ACCESSED_FIELD_NAME    = "accessed";
+    private static final String FILE_KEY_FIELD_NAME    = "filekey";
+    private static final String OWNER_FIELD_NAME       = "owner";
+    private static final String PERMISSIONS_FIELD_NAME = "permissions";
+
+    private Attributes()
+    {
+    }
+
+    /**
+     * Returns attribute fields
+     * with timestamps as milliseconds since the epoch.
+     */
+    public static Field[] fields()
+    {
+        return fields(
+                new AttributeTime(BasicFileAttributes::creationTime),
+                new AttributeTime(BasicFileAttributes::lastAccessTime));
+    }
+
+    /**
+     * Returns attribute fields
+     * with timestamps formatted using a date format.
+     * @param dateFormat the date format
+     * @param locale the locale
+     * @throws IOException if the date format is incorrect
+     */
+    public static Field[] fields(final String dateFormat, final Locale locale)
+            throws IOException
+    {
+        return fields(
+                new AttributeTime(
+                        BasicFileAttributes::creationTime,
+                        dateFormat,
+                        locale),
+                new AttributeTime(
+                        BasicFileAttributes::lastAccessTime,
+                        dateFormat,
+                        locale));
+    }
+
+    private static Field[] fields(
+            final TimeValue created, final TimeValue accessed)
+    {
+        return new Field[]
+        {
+                Field.simple(CREATED_FIELD_NAME,     created),
+                Field.simple(ACCESSED_FIELD_NAME,    accessed),
+                Field.simple(FILE_KEY_FIELD_NAME,    Attributes::fileKey),
+                Field.simple(OWNER_FIELD_NAME,       Attributes::owner),
+                Field.simple(PERMISSIONS_FIELD_NAME, Attributes::permissions),
+        };
+    }
+
+    private static BasicFileAttributes attributesOrNull(final File file)
+    {
+        try
+        {
+            return AttributedFile.attributesOf(file);
+        }
+        catch (final IOException ex)
+        {
+            return null;
+        }
+    }
+
+    private static String fileKey(final File file)
+    {
+        final BasicFileAttributes attributes = attributesOrNull(file);
+        if (attributes == null || attributes.fileKey() == null)
+        {
+            return "";
+        }
+        return attributes.fileKey().toString();
+    }
+
+    private static String owner(final File file) throws IOException
+    {
+        final BasicFileAttributes attributes = attributesOrNull(file);
+        if (attributes == null)
+        {
+            return "";
+        }
+        else if (attributes instanceof PosixFileAttributes)
+        {
+            try
+            {
+                return ((PosixFileAttributes)attributes).owner().getName();
+            }
+            catch (final UncheckedIOException ex)
+            {
+                throw ex.getCause();
+            }
+        }
+        return Files.getOwner(file.toPath()).getName();
+    }
+
+    private static String permissions(final File file)
+    {
+        final BasicFileAttributes attributes = attributesOrNull(file);
+        if (attributes instanceof PosixFileAttributes)
+        {
+            return PosixFilePermissions.toString(
+                    ((PosixFileAttributes)attributes).permissions());
+        }
+        return "";
+    }
+
+    private static final class AttributeTime extends TimeValue
+    {
+        private final Function<? super BasicFileAttributes, FileTime> time;
+
+        private AttributeTime(
+                final Function<? super BasicFileAttributes, FileTime> time)
+        {
+            assert time != null;
+            this.time = time;
+        }
+
+        private AttributeTime(
+                final Function<? super BasicFileAttributes, FileTime> time,
+                final String dateFormat,
+                final Locale locale) throws IOException
+        {
+            super(dateFormat, locale);
+            assert time != null;
+            this.time = time;
+        }
+
+        @Override
+        protected long time(final File file) throws IOException
+        {
+            final BasicFileAttributes attributes = attributesOrNull(file);
+            return attributes == null ? 0 : time.apply(attributes).toMillis();
+        }
+
+    }
+
+}
@@ -0,0 +1,226 @@
+package freecrumbs.finf.field;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+import freecrumbs.finf.field.LineSplitter.LineHandler;
+
+/**
+ * Reads the lines of a file backwards in blocks,
+ * from the last line to the first.
+ * Lines are split at the byte level,
+ * so this is only for the charsets
+ * {@link LiteralScanner#supports(Charset) supported}
+ * by the literal scanner.
+ * Lines are terminated the same way as by a {@link LineSplitter}.
+ *
+ * @author Tone Sommerland
+ */
+final class BackwardLines
+{
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final int BLOCK_SIZE = 8192;
+
+    private final RandomAccessFile file;
+    private final Charset charset;
+    private final Horspool[] literals;
+    private final LineHandler handler;
+    private byte[] buffer = new byte[2 * BLOCK_SIZE];
+    private int start = buffer.length;
+    private int end = buffer.length;
+    private long position;
+    private int lineFromEnd;
+
+    private BackwardLines(
+            final RandomAccessFile file,
+            final Charset charset,
+            final Horspool[] literals,
+            final LineHandler handler) throws IOException
+    {
+        this.file = file;
+        this.charset = charset;
+        this.literals = literals;
+        this.handler = handler;
+        this.position = file.length();
+    }
+
+    /**
+     * Passes the lines of the given file to the handler,
+     * starting with the last line,
+     * until the handler wants no more lines.
+     * The line numbers given to the handler count from the end,
+     * so the last line is number one.
+     * @param file the file to read
+     * @param charset the character encoding of the file
+     * @param literals if not null,
+     * only the lines containing at least one of these
+     * are decoded and passed to the handler
+     * (the others are still counted)
+     * @param handler receives the lines
+     */
+    static void read(
+            final File file,
+            final Charset charset,
+            final Horspool[] literals,
+            final LineHandler handler) throws IOException
+    {
+        try (final var in = new RandomAccessFile(file, "r"))
+        {
+            new BackwardLines(in, charset, literals, handler).read();
+        }
+    }
+
+    /**
+     * Returns the number of lines in the given file.
+     * The last line counts even if it is unterminated,
+     * as long as it is not empty.
+     */
+    static int countLines(final File file) throws IOException
+    {
+        int count = 0;
+        boolean crLast = false;
+        boolean pending = false;
+        final var block = new byte[BLOCK_SIZE];
+        try (final var in = new FileInputStream(file))
+        {
+            for (
+                    int bytesRead = in.read(block);
+                    bytesRead > 0;
+                    bytesRead = in.read(block))
+            {
+                for (int i = 0; i < bytesRead; i++)
+                {
+                    final byte b = block[i];
+                    if (b == CR || (b == LF && !crLast))
+                    {
+                        count++;
+                        pending = false;
+                    }
+                    else if (b != LF)
+                    {
+                        pending = true;
+                    }
+                    crLast = b == CR;
+                }
+            }
+        }
+        return pending ? count + 1 : count;
+    }
+
+    private void read() throws IOException
+    {
+        if (position == 0)
+        {
+            return;
+        }
+        load();
+        skipTrailingTerminator();
+        int i = end - 1;
+        while (true)
+        {
+            while (i >= start)
+            {
+                final byte b = buffer[i];
+                if (b != LF && b != CR)
+                {
+                    i--;
+                }
+                else if (i == start && b == LF && position > 0)
+                {
+                    // The preceding carriage return may be in the next block.
+                    break;
+                }
+                else
+                {
+                    if (!line(i + 1, end))
+                    {
+                        return;
+                    }
+                    end = b == LF && i > start && buffer[i - 1] == CR
+                            ? i - 1 : i;
+                    i = end - 1;
+                }
+            }
+            if (position == 0)
+            {
+                line(start, end);
+                return;
+            }
+            // Only the first byte of what is carried over can be a terminator.
+            final int carried = end - start;
+            load();
+            i = Math.min(end - 1, end - carried);
+        }
+    }
+
+    /**
+     * Reads the block before the current one.
+     */
+    private void load() throws IOException
+    {
+        final int blockSize = (int)Math.min(BLOCK_SIZE, position);
+        if (start < blockSize)
+        {
+            final int length = end - start;
+            final byte[] target = length + blockSize > buffer.length
+                    ? new byte[Math.max(2 * buffer.length, length + blockSize)]
+                    : buffer;
+            System.arraycopy(
+                    buffer, start, target, target.length - length, length);
+            buffer = target;
+            start = target.length - length;
+            end = target.length;
+        }
+        position -= blockSize;
+        start -= blockSize;
+        file.seek(position);
+        file.readFully(buffer, start, blockSize);
+    }
+
+    private void skipTrailingTerminator()
+    {
+        if (buffer[end - 1] == LF)
+        {
+            end--;
+            if (end > start && buffer[end - 1] == CR)
+            {
+                end--;
+            }
+        }
+        else if (buffer[end - 1] == CR)
+        {
+            end--;
+        }
+    }
+
+    private boolean line(final int from, final int to)
+    {
+        lineFromEnd++;
+        if (literals != null && !containsAny(from, to))
+        {
+            return true;
+        }
+        final CharBuffer line
+            = charset.decode(ByteBuffer.wrap(buffer, from, to - from));
+        return handler.handle(line, lineFromEnd);
+    }
+
+    private boolean containsAny(final int from, final int to)
+    {
+        for (final Horspool literal : literals)
+        {
+            if (literal.indexOf(buffer, from, to) >= 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
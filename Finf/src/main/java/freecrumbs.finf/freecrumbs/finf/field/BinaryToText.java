@@ -3,10 +3,11 @@ package freecrumbs.finf.field;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
-import com.calclipse.lib.misc.EncodingUtil;
-
+import freecrumbs.finf.AttributedFile;
 import freecrumbs.finf.Field;
 import freecrumbs.finf.FieldComputation;
 
@@ -20,6 +21,12 @@ import freecrumbs.finf.FieldComputation;
  * <li>base64mime: base64 with max 76 chars per line and crlf</li>
  * <li>base64url: URL and filename safe base64</li>
  * </ul>
+ * The content is encoded as it is read,
+ * so that the raw content is never held in memory,
+ * into a buffer presized from the file size up to a mebibyte,
+ * which grows as more content arrives.
+ * The content may be limited to a number of bytes,
+ * in which case the rest is neither read nor encoded.
  * 
  * @author Tone Sommerland
  */
@@ -30,50 +37,123 @@ public final class BinaryToText
     private static final String BASE64_FIELD_NAME        = "base64";
     private static final String BASE64_MIME_FIELD_NAME   = "base64mime";
     private static final String BASE64_URL_FIELD_NAME    = "base64url";
+    
+    private static final char[] LOWERCASE_DIGITS
+        = "0123456789abcdef".toCharArray();
+    
+    private static final char[] UPPERCASE_DIGITS
+        = "0123456789ABCDEF".toCharArray();
+    
+    private static final int MIME_LINE_LENGTH = 76;
+    
+    /**
+     * Presizing stops here,
+     * so that a large file does not claim memory before it is read.
+     */
+    private static final int MAX_PRESIZE = 1024 * 1024;
 
     private BinaryToText()
     {
     }
     
     /**
-     * Returns binary-to-text transformation fields.
+     * Returns binary-to-text transformation fields
+     * of the entire content.
      */
     public static Field[] fields()
+    {
+        return fields(0);
+    }
+    
+    /**
+     * Returns binary-to-text transformation fields
+     * of at most the given number of bytes.
+     * @param limit the max number of bytes to encode
+     * ({@code < 1} = unlimited)
+     */
+    public static Field[] fields(final long limit)
     {
         return new Field[]
         {
                 Field.computed(
                         HEX_LOWERCASE_FIELD_NAME,
-                        new HexComputation(false)),
+                        new HexComputation(
+                                HEX_LOWERCASE_FIELD_NAME,
+                                LOWERCASE_DIGITS,
+                                limit)),
                 Field.computed(
                         HEX_UPPERCASE_FIELD_NAME,
-                        new HexComputation(true)),
+                        new HexComputation(
+                                HEX_UPPERCASE_FIELD_NAME,
+                                UPPERCASE_DIGITS,
+                                limit)),
                 Field.computed(
                         BASE64_FIELD_NAME,
-                        new Base64Computation(Base64.getEncoder())),
+                        new Base64Computation(
+                                BASE64_FIELD_NAME,
+                                Base64.getEncoder(),
+                                false,
+                                limit)),
                 Field.computed(
                         BASE64_MIME_FIELD_NAME,
-                        new Base64Computation(Base64.getMimeEncoder())),
+                        new Base64Computation(
+                                BASE64_MIME_FIELD_NAME,
+                                Base64.getMimeEncoder(),
+                                true,
+                                limit)),
                 Field.computed(
                         BASE64_URL_FIELD_NAME,
-                        new Base64Computation(Base64.getUrlEncoder())),
+                        new Base64Computation(
+                                BASE64_URL_FIELD_NAME,
+                                Base64.getUrlEncoder(),
+                                false,
+                                limit)),
         };
     }
     
+    /**
+     * Returns the number of bytes that will be encoded of the given file.
+     */
+    private static long inputLength(final File file, final long limit)
+    {
+        final long length = AttributedFile.sizeOf(file);
+        return limit > 0 ? Math.min(length, limit) : length;
+    }
+    
+    private static int capacity(final long length)
+    {
+        return (int)Math.min(length, MAX_PRESIZE);
+    }
+    
+    private static String definition(final String name, final long limit)
+    {
+        return "binary:" + name + ":" + Math.max(0, limit);
+    }
+    
     private static final class HexComputation implements FieldComputation
     {
-        private final StringBuilder buffer = new StringBuilder();
-        private final boolean uppercase;
+        private final String name;
+        private final char[] digits;
+        private final long limit;
+        private StringBuilder buffer = new StringBuilder();
+        private long remaining;
 
-        private HexComputation(final boolean uppercase)
+        private HexComputation(
+                final String name, final char[] digits, final long limit)
         {
-            this.uppercase = uppercase;
+            assert name != null;
+            assert digits.length == 16;
+            this.name = name;
+            this.digits = digits;
+            this.limit = limit;
         }
 
         @Override
         public void reset(final File file) throws IOException
         {
-            buffer.setLength(0);
+            final long length = inputLength(file, limit);
+            buffer = new StringBuilder(capacity(2 * length));
+            remaining = limit > 0 ? limit : Long.MAX_VALUE;
         }
 
         @Override
@@ -82,38 +162,70 @@ public final class BinaryToText
                 final int offset,
                 final int length) throws IOException
         {
-            for (int i = offset; i < length; i++)
+            final int end = offset + (int)Math.min(length, remaining);
+            for (int i = offset; i < end; i++)
             {
-                buffer.append(EncodingUtil.byteToHex(uppercase, input[i]));
+                buffer.append(digits[(input[i] >> 4) & 0xf])
+                    .append(digits[input[i] & 0xf]);
             }
-            return true;
+            remaining -= end - offset;
+            return remaining > 0;
+        }
+
+        @Override
+        public String definition()
+        {
+            return BinaryToText.definition(name, limit);
         }
 
         @Override
         public String finish() throws IOException
         {
-            return buffer.toString();
+            final String value = buffer.toString();
+            buffer = new StringBuilder();
+            return value;
+        }
+
+        @Override
+        public boolean isIndependent()
+        {
+            return true;
         }
         
     }
     
     private static final class Base64Computation implements FieldComputation
     {
-        private final ByteArrayOutputStream
-        buffer = new ByteArrayOutputStream();
-        
+        private final String name;
         private final Base64.Encoder encoder;
+        private final boolean mime;
+        private final long limit;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream encoding;
+        private long remaining;
 
-        private Base64Computation(final Base64.Encoder encoder)
+        private Base64Computation(
+                final String name,
+                final Base64.Encoder encoder,
+                final boolean mime,
+                final long limit)
         {
+            assert name    != null;
             assert encoder != null;
+            this.name = name;
             this.encoder = encoder;
+            this.mime = mime;
+            this.limit = limit;
         }
 
         @Override
         public void reset(final File file) throws IOException
         {
-            buffer.reset();
+            final long length = inputLength(file, limit);
+            buffer = new ByteArrayOutputStream(
+                    capacity(encodedLength(length)));
+            encoding = encoder.wrap(buffer);
+            remaining = limit > 0 ? limit : Long.MAX_VALUE;
         }
 
         @Override
@@ -122,14 +234,43 @@ public final class BinaryToText
                 final int offset,
                 final int length) throws IOException
         {
-            buffer.write(input, offset, length);
-            return true;
+            final int count = (int)Math.min(length, remaining);
+            encoding.write(input, offset, count);
+            remaining -= count;
+            return remaining > 0;
+        }
+
+        @Override
+        public String definition()
+        {
+            return BinaryToText.definition(name, limit);
         }
 
         @Override
         public String finish() throws IOException
         {
-            return encoder.encodeToString(buffer.toByteArray());
+            encoding.close();
+            final String value = buffer.toString(StandardCharsets.ISO_8859_1);
+            buffer = new ByteArrayOutputStream();
+            return value;
+        }
+
+        @Override
+        public boolean isIndependent()
+        {
+            return true;
+        }
+        
+        private long encodedLength(final long length)
+        {
+            final long encodedLength = (length + 2) / 3 * 4;
+            if (mime && encodedLength > 0)
+            {
+                final long lines
+                    = (encodedLength + MIME_LINE_LENGTH - 1) / MIME_LINE_LENGTH;
+                return encodedLength + 2 * (lines - 1);
+            }
+            return encodedLength;
         }
         
     }
@@ -0,0 +1,129 @@
+package freecrumbs.finf.field;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Loops that classify or count the bytes of a whole buffer at a time.
+ * Classifications are precomputed into 256-entry lookup tables
+ * indexed by the unsigned byte value,
+ * so that the loops are tight enough for the JIT to unroll.
+ *
+ * @author Tone Sommerland
+ */
+final class ByteKernels
+{
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private ByteKernels()
+    {
+    }
+
+    /**
+     * Returns a lookup table with one for each byte value
+     * that the given predicate rejects, and zero for the others.
+     * The predicate is given the signed byte value.
+     */
+    static byte[] rejectionTable(final IntPredicate predicate)
+    {
+        final var table = new byte[256];
+        for (int i = 0; i < table.length; i++)
+        {
+            table[i] = predicate.test((byte)i) ? (byte)0 : (byte)1;
+        }
+        return table;
+    }
+
+    /**
+     * Returns the sum of the table entries of the bytes in the given range.
+     * @param table a 256-entry lookup table of zeros and ones
+     */
+    static int count(
+            final byte[] table,
+            final byte[] input,
+            final int from,
+            final int to)
+    {
+        int count = 0;
+        for (int i = from; i < to; i++)
+        {
+            count += table[input[i] & 0xff];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given byte
+     * in the given range, or -1 if there is none.
+     */
+    static int indexOf(
+            final byte b,
+            final byte[] input,
+            final int from,
+            final int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (input[i] == b)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the line terminators in the given range.
+     * The counts are added to {@code counts}, which is
+     * {carriage returns, line feeds, carriage-return-line-feeds}.
+     * A carriage return is not counted
+     * until the byte after it is known,
+     * so a trailing carriage return is left pending.
+     * @param pendingCr whether or not a carriage return
+     * is pending from the preceding range
+     * @return whether or not a carriage return is pending
+     * at the end of this range
+     */
+    static boolean countEols(
+            final byte[] input,
+            final int from,
+            final int to,
+            final boolean pendingCr,
+            final int[] counts)
+    {
+        if (from == to)
+        {
+            return pendingCr;
+        }
+        int crs = pendingCr ? 1 : 0;
+        int lfs = 0;
+        int crlfs = 0;
+        for (int i = from; i < to; i++)
+        {
+            final byte b = input[i];
+            if (b > CR || b < LF)
+            {
+                // The common case: neither.
+                continue;
+            }
+            else if (b == CR)
+            {
+                crs++;
+            }
+            else if (b == LF)
+            {
+                lfs++;
+                if (i > from ? input[i - 1] == CR : pendingCr)
+                {
+                    crlfs++;
+                }
+            }
+        }
+        final boolean crLast = input[to - 1] == CR;
+        counts[0] += crs - crlfs - (crLast ? 1 : 0);
+        counts[1] += lfs - crlfs;
+        counts[2] += crlfs;
+        return crLast;
+    }
+
+}
@@ -0,0 +1,279 @@
+package freecrumbs.finf.field;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Supplier;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32C;
+
+import freecrumbs.finf.Field;
+import freecrumbs.finf.FieldComputation;
+
+/**
+ * Fast, non-cryptographic checksums of the file content,
+ * suitable for change detection and for pre-screening duplicates.
+ * The values are lowercase hexadecimal.
+ * These are the fields:
+ * <ul>
+ * <li>crc32c: CRC-32C (Castagnoli)</li>
+ * <li>adler32: Adler-32</li>
+ * <li>xxh64: 64-bit xxHash with seed zero</li>
+ * </ul>
+ *
+ * @author Tone Sommerland
+ */
+public final class Checksum
+{
+    private static final String CRC32C_FIELD_NAME  = "crc32c";
+    private static final String ADLER32_FIELD_NAME = "adler32";
+    private static final String XXH64_FIELD_NAME   = "xxh64";
+
+    private Checksum()
+    {
+    }
+
+    /**
+     * Returns checksum fields.
+     */
+    public static Field[] fields()
+    {
+        return new Field[]
+        {
+                Field.computed(
+                        CRC32C_FIELD_NAME,
+                        new ChecksumComputation(
+                                CRC32C_FIELD_NAME, CRC32C::new, 32)),
+                Field.computed(
+                        ADLER32_FIELD_NAME,
+                        new ChecksumComputation(
+                                ADLER32_FIELD_NAME, Adler32::new, 32)),
+                Field.computed(
+                        XXH64_FIELD_NAME,
+                        new ChecksumComputation(
+                                XXH64_FIELD_NAME, XxHash64::new, 64)),
+        };
+    }
+
+    /**
+     * Returns the given value in lowercase hexadecimal,
+     * zero-padded to the given number of bits.
+     */
+    private static String hex(final long value, final int bits)
+    {
+        final var hex = new StringBuilder(bits / 4);
+        for (int shift = bits - 4; shift >= 0; shift -= 4)
+        {
+            hex.append(Character.forDigit((int)(value >>> shift) & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static final class ChecksumComputation
+        implements FieldComputation
+    {
+        private final String name;
+        private final Supplier<? extends java.util.zip.Checksum> factory;
+        private final int bits;
+        private java.util.zip.Checksum checksum;
+
+        private ChecksumComputation(
+                final String name,
+                final Supplier<? extends java.util.zip.Checksum> factory,
+                final int bits)
+        {
+            assert name    != null;
+            assert factory != null;
+            this.name    = name;
+            this.factory = factory;
+            this.bits    = bits;
+        }
+
+        @Override
+        public void reset(final File file) throws IOException
+        {
+            checksum = factory.get();
+        }
+
+        @Override
+        public boolean update(
+                final byte[] input,
+                final int offset,
+                final int length) throws IOException
+        {
+            checksum.update(input, offset, length);
+            return true;
+        }
+
+        @Override
+        public boolean update(final ByteBuffer input) throws IOException
+        {
+            checksum.update(input);
+            return true;
+        }
+
+        @Override
+        public boolean isIndependent()
+        {
+            return true;
+        }
+
+        @Override
+        public String definition()
+        {
+            return "checksum:" + name;
+        }
+
+        @Override
+        public String finish() throws IOException
+        {
+            return hex(checksum.getValue(), bits);
+        }
+    }
+
+    /**
+     * A streaming implementation of XXH64.
+     * Input is consumed in stripes of 32 bytes;
+     * a partial stripe is kept until more input arrives.
+     */
+    private static final class XxHash64 implements java.util.zip.Checksum
+    {
+        private static final long PRIME1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME3 = 0x165667B19E3779F9L;
+        private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+        private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+        private static final int STRIPE = 32;
+
+        private static final VarHandle LONG = MethodHandles
+                .byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private static final VarHandle INT = MethodHandles
+                .byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private final byte[] stripe = new byte[STRIPE];
+        private int buffered;
+        private long total;
+        private long v1;
+        private long v2;
+        private long v3;
+        private long v4;
+
+        private XxHash64()
+        {
+            reset();
+        }
+
+        @Override
+        public void update(final int b)
+        {
+            update(new byte[] {(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void update(final byte[] b, final int off, final int len)
+        {
+            total += len;
+            int offset = off;
+            final int end = off + len;
+            if (buffered > 0)
+            {
+                final int count = Math.min(STRIPE - buffered, len);
+                System.arraycopy(b, offset, stripe, buffered, count);
+                buffered += count;
+                offset += count;
+                if (buffered < STRIPE)
+                {
+                    return;
+                }
+                consume(stripe, 0);
+                buffered = 0;
+            }
+            for (; offset + STRIPE <= end; offset += STRIPE)
+            {
+                consume(b, offset);
+            }
+            buffered = end - offset;
+            System.arraycopy(b, offset, stripe, 0, buffered);
+        }
+
+        @Override
+        public long getValue()
+        {
+            long hash;
+            if (total >= STRIPE)
+            {
+                hash = Long.rotateLeft(v1, 1)
+                        + Long.rotateLeft(v2, 7)
+                        + Long.rotateLeft(v3, 12)
+                        + Long.rotateLeft(v4, 18);
+                hash = merge(hash, v1);
+                hash = merge(hash, v2);
+                hash = merge(hash, v3);
+                hash = merge(hash, v4);
+            }
+            else
+            {
+                hash = PRIME5;
+            }
+            hash += total;
+            int i = 0;
+            for (; i + 8 <= buffered; i += 8)
+            {
+                hash ^= round(0, (long)LONG.get(stripe, i));
+                hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            }
+            if (i + 4 <= buffered)
+            {
+                hash ^= ((int)INT.get(stripe, i) & 0xffffffffL) * PRIME1;
+                hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+                i += 4;
+            }
+            for (; i < buffered; i++)
+            {
+                hash ^= (stripe[i] & 0xff) * PRIME5;
+                hash = Long.rotateLeft(hash, 11) * PRIME1;
+            }
+            hash ^= hash >>> 33;
+            hash *= PRIME2;
+            hash ^= hash >>> 29;
+            hash *= PRIME3;
+            hash ^= hash >>> 32;
+            return hash;
+        }
+
+        @Override
+        public void reset()
+        {
+            buffered = 0;
+            total = 0;
+            v1 = PRIME1 + PRIME2;
+            v2 = PRIME2;
+            v3 = 0;
+            v4 = -PRIME1;
+        }
+
+        private void consume(final byte[] input, final int offset)
+        {
+            v1 = round(v1, (long)LONG.get(input, offset));
+            v2 = round(v2, (long)LONG.get(input, offset + 8));
+            v3 = round(v3, (long)LONG.get(input, offset + 16));
+            v4 = round(v4, (long)LONG.get(input, offset + 24));
+        }
+
+        private static long round(final long acc, final long input)
+        {
+            return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+        }
+
+        private static long merge(final long hash, final long v)
+        {
+            return (hash ^ round(0, v)) * PRIME1 + PRIME4;
+        }
+    }
+
+}
@@ -65,6 +65,7 @@ public final class Classification implements FieldComputation
         private final int limit;
         private final double threshold;
         private final IntPredicate isTextChar;
+        private final byte[] nonTextChars;
         
         private Heuristic(
                 final int limit,
@@ -74,6 +75,7 @@ public final class Classification implements FieldComputation
             this.limit = limit;
             this.threshold = threshold;
             this.isTextChar = requireNonNull(isTextChar, "isTextChar");
+            this.nonTextChars = ByteKernels.rejectionTable(isTextChar);
         }
         
         public Heuristic withLimit(final int limit)
@@ -86,6 +88,11 @@ public final class Classification implements FieldComputation
             return new Heuristic(this.limit, threshold, this.isTextChar);
         }
         
+        /**
+         * Returns a heuristic with the given text-char predicate.
+         * The predicate is given signed byte values,
+         * and is tabulated for all of them up front.
+         */
         public Heuristic withIsTextChar(final IntPredicate isTextChar)
         {
             return new Heuristic(this.limit, this.threshold, isTextChar);
@@ -141,23 +148,25 @@ public final class Classification implements FieldComputation
             final int offset,
             final int length) throws IOException
     {
-        final int offsetPlusLength = offset + length;
-        for (int i = offset; i < offsetPlusLength; i++)
+        final boolean limited = heuristic.limit > 0
+                && bytesRead + length > heuristic.limit;
+        final int end = limited
+                ? offset + heuristic.limit - bytesRead : offset + length;
+        final int zero = ByteKernels.indexOf((byte)0, input, offset, end);
+        if (zero >= 0)
         {
-            if (++bytesRead > heuristic.limit && heuristic.limit > 0)
-            {
-                return false;
-            }
-            final byte ch = input[i];
-            if (ch == 0)
-            {
-                category = BINARY;
-                return false;
-            }
-            else if (!heuristic.isTextChar.test(ch))
-            {
-                binCount++;
-            }
+            bytesRead += zero - offset + 1;
+            category = BINARY;
+            return false;
+        }
+        binCount += ByteKernels.count(
+                heuristic.nonTextChars, input, offset, end);
+        bytesRead += end - offset;
+        if (limited)
+        {
+            // The total has always included the byte past the limit.
+            bytesRead++;
+            return false;
         }
         return true;
     }
@@ -173,4 +182,10 @@ public final class Classification implements FieldComputation
         return value.apply(category);
     }
 
+    @Override
+    public boolean isIndependent()
+    {
+        return true;
+    }
+
 }
@@ -2,6 +2,7 @@ package freecrumbs.finf.field;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.function.Function;
 
 import freecrumbs.finf.Field;
@@ -51,16 +52,22 @@ public final class Eol
         {
                 Field.computed(
                         EOL_COUNT_FIELD_NAME,
-                        new EolCountComputation(counter, Eol::eolCount)),
+                        new EolCountComputation(
+                                EOL_COUNT_FIELD_NAME, counter, Eol::eolCount)),
                 Field.computed(
                         CR_COUNT_FIELD_NAME,
-                        new EolCountComputation(counter, Eol::crCount)),
+                        new EolCountComputation(
+                                CR_COUNT_FIELD_NAME, counter, Eol::crCount)),
                 Field.computed(
                         LF_COUNT_FIELD_NAME,
-                        new EolCountComputation(counter, Eol::lfCount)),
+                        new EolCountComputation(
+                                LF_COUNT_FIELD_NAME, counter, Eol::lfCount)),
                 Field.computed(
                         CRLF_COUNT_FIELD_NAME,
-                        new EolCountComputation(counter, Eol::crlfCount)),
+                        new EolCountComputation(
+                                CRLF_COUNT_FIELD_NAME,
+                                counter,
+                                Eol::crlfCount)),
                 Field.simple(EOL_FIELD_NAME,  file -> EOL),
                 Field.simple(CR_FIELD_NAME,   file -> "\r"),
                 Field.simple(LF_FIELD_NAME,   file -> "\n"),
@@ -70,15 +77,19 @@ public final class Eol
     
     private static final class EolCountComputation implements FieldComputation
     {
+        private final String name;
         private final EolCounter counter;
         private final Function<? super EolCounter, String> value;
 
         private EolCountComputation(
+                final String name,
                 final EolCounter counter,
                 final Function<? super EolCounter, String> value)
         {
+            assert name    != null;
             assert counter != null;
             assert value   != null;
+            this.name    = name;
             this.counter = counter;
             this.value   = value;
         }
@@ -95,15 +106,13 @@ public final class Eol
                 final int offset,
                 final int length) throws IOException
         {
-            final int offsetPlusLength = offset + length;
-            for (int i = offset; i < offsetPlusLength; i++)
-            {
-                if (!counter.update(this, input[i]))
-                {
-                    return false;
-                }
-            }
-            return true;
+            return counter.update(this, input, offset, length);
+        }
+
+        @Override
+        public String definition()
+        {
+            return "eol:" + name;
         }
 
         @Override
@@ -118,31 +127,37 @@ public final class Eol
     private static String eolCount(final EolCounter counter)
     {
         return String.valueOf(
-                counter.crCount + counter.lfCount + counter.crlfCount);
+                counter.crCount() + counter.lfCount() + counter.crlfCount());
     }
     
     private static String crCount(final EolCounter counter)
     {
-        return String.valueOf(counter.crCount);
+        return String.valueOf(counter.crCount());
     }
     
     private static String lfCount(final EolCounter counter)
     {
-        return String.valueOf(counter.lfCount);
+        return String.valueOf(counter.lfCount());
     }
     
     private static String crlfCount(final EolCounter counter)
     {
-        return String.valueOf(counter.crlfCount);
+        return String.valueOf(counter.crlfCount());
     }
     
+    /**
+     * Counts line terminators on behalf of its master,
+     * a whole buffer at a time.
+     */
     private static final class EolCounter
     {
+        private static final int CR = 0;
+        private static final int LF = 1;
+        private static final int CRLF = 2;
+        
+        private final int[] counts = new int[3];
         private Object master;
-        private int crCount;
-        private int lfCount;
-        private int crlfCount;
-        private boolean lastWasCr;
+        private boolean pendingCr;
         
         private EolCounter()
         {
@@ -153,51 +168,50 @@ public final class Eol
             if (master == null)
             {
                 master = caller;
-                crCount = 0;
-                lfCount = 0;
-                crlfCount = 0;
-                lastWasCr = false;
+                Arrays.fill(counts, 0);
+                pendingCr = false;
             }
         }
 
-        private boolean update(final Object caller, final byte b)
+        private boolean update(
+                final Object caller,
+                final byte[] input,
+                final int offset,
+                final int length)
         {
             if (master != caller)
             {
                 return false;
             }
-            if (b == '\n')
-            {
-                if (lastWasCr)
-                {
-                    crlfCount++;
-                    lastWasCr = false;
-                }
-                else
-                {
-                    lfCount++;
-                }
-            }
-            else
-            {
-                if (lastWasCr)
-                {
-                    crCount++;
-                }
-                lastWasCr = b == '\r';
-            }
+            pendingCr = ByteKernels.countEols(
+                    input, offset, offset + length, pendingCr, counts);
             return true;
         }
         
         private void finish()
         {
             master = null;
-            if (lastWasCr)
+            if (pendingCr)
             {
-                crCount++;
-                lastWasCr = false;
+                counts[CR]++;
+                pendingCr = false;
             }
         }
+        
+        private int crCount()
+        {
+            return counts[CR];
+        }
+        
+        private int lfCount()
+        {
+            return counts[LF];
+        }
+        
+        private int crlfCount()
+        {
+            return counts[CRLF];
+        }
     }
 
 }
@@ -4,6 +4,7 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -66,11 +67,30 @@ public final class Hash
             return true;
         }
 
+        @Override
+        public boolean update(final ByteBuffer input) throws IOException
+        {
+            messageDigest.update(input);
+            return true;
+        }
+
+        @Override
+        public String definition()
+        {
+            return "hash:" + algorithm;
+        }
+
         @Override
         public String finish() throws IOException
         {
             return EncodingUtil.bytesToHex(false, messageDigest.digest());
         }
+
+        @Override
+        public boolean isIndependent()
+        {
+            return true;
+        }
         
     }
 
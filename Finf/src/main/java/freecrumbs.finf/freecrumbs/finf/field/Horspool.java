@@ -0,0 +1,67 @@
+package freecrumbs.finf.field;
+
+import java.util.Arrays;
+
+/**
+ * Finds a byte sequence using the Boyer-Moore-Horspool algorithm.
+ * This class is immutable.
+ *
+ * @author Tone Sommerland
+ */
+final class Horspool
+{
+    private final byte[] pattern;
+    private final int[] shifts = new int[256];
+
+    /**
+     * Creates a finder of the given non-empty byte sequence.
+     */
+    Horspool(final byte[] pattern)
+    {
+        assert pattern.length > 0;
+        this.pattern = pattern.clone();
+        final int last = pattern.length - 1;
+        Arrays.fill(shifts, pattern.length);
+        for (int i = 0; i < last; i++)
+        {
+            shifts[pattern[i] & 0xff] = last - i;
+        }
+    }
+
+    /**
+     * Returns the index of the first occurrence
+     * that lies entirely within the given range,
+     * or -1 if there is none.
+     * @param input the input to search
+     * @param from the start of the range (inclusive)
+     * @param to the end of the range (exclusive)
+     */
+    int indexOf(final byte[] input, final int from, final int to)
+    {
+        final int last = pattern.length - 1;
+        final byte lastByte = pattern[last];
+        for (int i = from; i + last < to;)
+        {
+            final byte b = input[i + last];
+            if (b == lastByte && matchesAt(input, i))
+            {
+                return i;
+            }
+            i += shifts[b & 0xff];
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(final byte[] input, final int index)
+    {
+        for (int i = pattern.length - 2; i >= 0; i--)
+        {
+            if (input[index + i] != pattern[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
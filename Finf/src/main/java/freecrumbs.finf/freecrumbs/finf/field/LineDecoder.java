@@ -0,0 +1,126 @@
+package freecrumbs.finf.field;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Incrementally decodes bytes into lines.
+ * Malformed and unmappable input is replaced.
+ *
+ * @author Tone Sommerland
+ */
+final class LineDecoder implements LineSplitter
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer out = CharBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder();
+    private final CharsetDecoder decoder;
+    private final LineHandler handler;
+    private int lineNumber;
+    private boolean skipLf;
+    private boolean pendingLine;
+    private boolean done;
+
+    /**
+     * Creates a line decoder.
+     * @param charset the character encoding of the input
+     * @param handler receives the lines
+     */
+    LineDecoder(final Charset charset, final LineHandler handler)
+    {
+        assert handler != null;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.handler = handler;
+    }
+
+    @Override
+    public boolean update(
+            final byte[] input, final int offset, final int length)
+    {
+        int position = offset;
+        final int end = offset + length;
+        while (!done && position < end)
+        {
+            final int count = Math.min(in.remaining(), end - position);
+            in.put(input, position, count);
+            position += count;
+            in.flip();
+            decoder.decode(in, out, false);
+            in.compact();
+            split();
+        }
+        return !done;
+    }
+
+    @Override
+    public void finish()
+    {
+        if (done)
+        {
+            return;
+        }
+        in.flip();
+        CoderResult result;
+        do
+        {
+            result = decoder.decode(in, out, true);
+            split();
+        }
+        while (result.isOverflow());
+        do
+        {
+            result = decoder.flush(out);
+            split();
+        }
+        while (result.isOverflow());
+        if (!done && pendingLine)
+        {
+            emit();
+        }
+        done = true;
+    }
+
+    private void split()
+    {
+        out.flip();
+        while (!done && out.hasRemaining())
+        {
+            final char ch = out.get();
+            if (skipLf)
+            {
+                skipLf = false;
+                if (ch == '\n')
+                {
+                    continue;
+                }
+            }
+            if (ch == '\n' || ch == '\r')
+            {
+                skipLf = ch == '\r';
+                emit();
+            }
+            else
+            {
+                line.append(ch);
+                pendingLine = true;
+            }
+        }
+        out.clear();
+    }
+
+    private void emit()
+    {
+        done = !handler.handle(line, ++lineNumber);
+        line.setLength(0);
+        pendingLine = false;
+    }
+
+}
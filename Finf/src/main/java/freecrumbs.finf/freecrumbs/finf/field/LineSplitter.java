@@ -0,0 +1,65 @@
+package freecrumbs.finf.field;
+
+import java.nio.charset.Charset;
+
+/**
+ * Splits content into lines as it arrives.
+ * Lines are terminated the same way as by
+ * {@link java.io.BufferedReader#readLine()}:
+ * by a line feed, a carriage return
+ * or a carriage return followed by a line feed.
+ *
+ * @author Tone Sommerland
+ */
+interface LineSplitter
+{
+    /**
+     * Receives lines.
+     */
+    @FunctionalInterface
+    interface LineHandler
+    {
+        /**
+         * Handles the next line.
+         * @param line the line without its terminator
+         * @param lineNumber the one-based line number
+         * @return {@code false} if no more lines are wanted
+         */
+        public abstract boolean handle(CharSequence line, int lineNumber);
+    }
+
+    /**
+     * Returns a line splitter for the given charset.
+     * If literals are given,
+     * only the lines containing at least one of them
+     * are decoded and passed to the handler.
+     * @param charset the character encoding of the input
+     * @param literals literals from
+     * {@link LiteralScanner#literals(Charset, java.util.List)},
+     * or {@code null} to pass every line to the handler
+     * @param handler receives the lines
+     */
+    public static LineSplitter of(
+            final Charset charset,
+            final Horspool[] literals,
+            final LineHandler handler)
+    {
+        if (literals == null)
+        {
+            return new LineDecoder(charset, handler);
+        }
+        return new LiteralScanner(charset, literals, handler);
+    }
+
+    /**
+     * Splits the given input.
+     * @return {@code false} if the handler wants no more lines
+     */
+    public abstract boolean update(byte[] input, int offset, int length);
+
+    /**
+     * Splits any remaining input and handles the last line.
+     */
+    public abstract void finish();
+
+}
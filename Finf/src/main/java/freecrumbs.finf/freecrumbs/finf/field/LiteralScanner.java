@@ -0,0 +1,390 @@
+package freecrumbs.finf.field;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits content into lines at the byte level,
+ * and decodes only the lines that contain at least one of some literals.
+ * The other lines are merely counted.
+ * Content without any of the literals is never decoded.
+ * This works for UTF-8 and for single-byte charsets
+ * that encode line feed and carriage return as in ASCII,
+ * because in those, the line terminators and the encoded literals
+ * cannot occur as part of other characters.
+ * Malformed and unmappable input is replaced.
+ *
+ * @author Tone Sommerland
+ */
+final class LiteralScanner implements LineSplitter
+{
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final Charset charset;
+    private final Horspool[] literals;
+    private final int[] hits;
+    private final LineHandler handler;
+    private byte[] carry = new byte[256];
+    private int carryLength;
+    private int lineNumber;
+    private boolean skipLf;
+    private boolean done;
+
+    /**
+     * Creates a literal scanner.
+     * @param charset the character encoding of the input
+     * @param literals the literals
+     * @param handler receives the lines containing any of the literals
+     */
+    LiteralScanner(
+            final Charset charset,
+            final Horspool[] literals,
+            final LineHandler handler)
+    {
+        assert literals.length > 0;
+        assert handler != null;
+        this.charset = charset;
+        this.literals = literals.clone();
+        this.hits = new int[literals.length];
+        this.handler = handler;
+    }
+
+    /**
+     * Whether or not content in the given charset
+     * may be split into lines at the byte level.
+     */
+    static boolean supports(final Charset charset)
+    {
+        return charset.equals(StandardCharsets.UTF_8)
+                || singleByteTable(charset) != null;
+    }
+
+    /**
+     * Returns the literals encoded in the given charset,
+     * or null if they cannot be scanned for at the byte level
+     * (or there are none).
+     */
+    static Horspool[] literals(
+            final Charset charset, final List<String> literals)
+    {
+        if (literals.isEmpty())
+        {
+            return null;
+        }
+        final var result = new Horspool[literals.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            final byte[] encoded = encoded(charset, literals.get(i));
+            if (encoded == null)
+            {
+                return null;
+            }
+            result[i] = new Horspool(encoded);
+        }
+        return result;
+    }
+
+    private static byte[] encoded(final Charset charset, final String literal)
+    {
+        if (literal.isEmpty()
+                || literal.indexOf('\uFFFD') >= 0
+                || literal.indexOf('\n') >= 0
+                || literal.indexOf('\r') >= 0)
+        {
+            return null;
+        }
+        if (charset.equals(StandardCharsets.UTF_8))
+        {
+            try
+            {
+                final ByteBuffer buffer = charset.newEncoder()
+                        .encode(CharBuffer.wrap(literal));
+                return Arrays.copyOf(buffer.array(), buffer.limit());
+            }
+            catch (final CharacterCodingException ex)
+            {
+                return null;
+            }
+        }
+        final String table = singleByteTable(charset);
+        if (table == null)
+        {
+            return null;
+        }
+        final var encoded = new byte[literal.length()];
+        for (int i = 0; i < encoded.length; i++)
+        {
+            final char ch = literal.charAt(i);
+            final int index = table.indexOf(ch);
+            if (index < 0 || index != table.lastIndexOf(ch))
+            {
+                return null;
+            }
+            encoded[i] = (byte)index;
+        }
+        return encoded;
+    }
+
+    /**
+     * Returns the characters of all 256 byte values,
+     * or null if the charset is not
+     * a single-byte charset with ASCII line terminators.
+     */
+    private static String singleByteTable(final Charset charset)
+    {
+        if (!charset.canEncode()
+                || charset.newEncoder().maxBytesPerChar() != 1
+                || charset.newDecoder().maxCharsPerByte() != 1)
+        {
+            return null;
+        }
+        final var table = new StringBuilder(256);
+        for (int b = 0; b < 256; b++)
+        {
+            final CharBuffer decoded
+                = charset.decode(ByteBuffer.wrap(new byte[] {(byte)b}));
+            if (decoded.length() != 1)
+            {
+                return null;
+            }
+            table.append(decoded.charAt(0));
+        }
+        if (table.indexOf("\n") != LF
+                || table.lastIndexOf("\n") != LF
+                || table.indexOf("\r") != CR
+                || table.lastIndexOf("\r") != CR)
+        {
+            return null;
+        }
+        return table.toString();
+    }
+
+    @Override
+    public boolean update(
+            final byte[] input, final int offset, final int length)
+    {
+        final int end = offset + length;
+        int position = offset;
+        if (done || position == end)
+        {
+            return !done;
+        }
+        if (skipLf)
+        {
+            skipLf = false;
+            if (input[position] == LF)
+            {
+                position++;
+            }
+        }
+        if (carryLength > 0)
+        {
+            final int terminator = indexOfTerminator(input, position, end);
+            if (terminator < 0)
+            {
+                addToCarry(input, position, end);
+                return true;
+            }
+            addToCarry(input, position, terminator);
+            position = afterTerminator(input, terminator, end);
+            completeLine(carry, 0, carryLength);
+            carryLength = 0;
+            if (done)
+            {
+                return false;
+            }
+        }
+        final int last = lastIndexOfTerminator(input, position, end);
+        if (last < 0)
+        {
+            addToCarry(input, position, end);
+            return true;
+        }
+        scan(input, position, last, end);
+        if (!done)
+        {
+            final int rest = afterTerminator(input, last, end);
+            addToCarry(input, rest, end);
+        }
+        return !done;
+    }
+
+    @Override
+    public void finish()
+    {
+        if (!done && carryLength > 0)
+        {
+            completeLine(carry, 0, carryLength);
+        }
+        carryLength = 0;
+        done = true;
+    }
+
+    /**
+     * Scans complete lines.
+     * @param from the start of the first line
+     * @param last the terminator of the last line
+     * @param end the end of the input
+     */
+    private void scan(
+            final byte[] input, final int from, final int last, final int end)
+    {
+        Arrays.fill(hits, -1);
+        int lineStart = from;
+        while (!done)
+        {
+            final int hit = firstHit(input, lineStart, last);
+            if (hit < 0)
+            {
+                break;
+            }
+            final int start = countLines(input, lineStart, hit);
+            final int terminator = indexOfTerminator(input, hit, last + 1);
+            completeLine(input, start, terminator - start);
+            lineStart = afterTerminator(input, terminator, end);
+        }
+        if (!done)
+        {
+            countLines(input, lineStart, last + 1);
+        }
+    }
+
+    /**
+     * Returns the first occurrence of any of the literals.
+     */
+    private int firstHit(final byte[] input, final int from, final int to)
+    {
+        int first = NONE;
+        for (int i = 0; i < literals.length; i++)
+        {
+            if (hits[i] < from)
+            {
+                final int hit = literals[i].indexOf(input, from, to);
+                hits[i] = hit < 0 ? NONE : hit;
+            }
+            first = Math.min(first, hits[i]);
+        }
+        return first == NONE ? -1 : first;
+    }
+
+    private boolean containsAny(
+            final byte[] input, final int from, final int to)
+    {
+        for (final Horspool literal : literals)
+        {
+            if (literal.indexOf(input, from, to) >= 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void completeLine(
+            final byte[] input, final int offset, final int length)
+    {
+        lineNumber++;
+        if (containsAny(input, offset, offset + length))
+        {
+            final CharBuffer line
+                = charset.decode(ByteBuffer.wrap(input, offset, length));
+            done = !handler.handle(line, lineNumber);
+        }
+    }
+
+    /**
+     * Counts the lines terminated in the given range,
+     * which starts at the beginning of a line.
+     * @return the start of the line containing the end of the range
+     */
+    private int countLines(final byte[] input, final int from, final int to)
+    {
+        int lineStart = from;
+        for (int i = from; i < to; i++)
+        {
+            final byte b = input[i];
+            if (b == CR)
+            {
+                lineNumber++;
+                lineStart = i + 1;
+            }
+            else if (b == LF)
+            {
+                if (i == from || input[i - 1] != CR)
+                {
+                    lineNumber++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        return lineStart;
+    }
+
+    /**
+     * Returns the index after the given line terminator,
+     * taking a line feed after a carriage return into account.
+     */
+    private int afterTerminator(
+            final byte[] input, final int terminator, final int end)
+    {
+        if (input[terminator] == CR)
+        {
+            if (terminator + 1 == end)
+            {
+                skipLf = true;
+            }
+            else if (input[terminator + 1] == LF)
+            {
+                return terminator + 2;
+            }
+        }
+        return terminator + 1;
+    }
+
+    private void addToCarry(
+            final byte[] input, final int from, final int to)
+    {
+        final int length = to - from;
+        if (carryLength + length > carry.length)
+        {
+            carry = Arrays.copyOf(
+                    carry, Math.max(carry.length * 2, carryLength + length));
+        }
+        System.arraycopy(input, from, carry, carryLength, length);
+        carryLength += length;
+    }
+
+    private static int indexOfTerminator(
+            final byte[] input, final int from, final int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (input[i] == LF || input[i] == CR)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOfTerminator(
+            final byte[] input, final int from, final int to)
+    {
+        for (int i = to - 1; i >= from; i--)
+        {
+            if (input[i] == LF || input[i] == CR)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
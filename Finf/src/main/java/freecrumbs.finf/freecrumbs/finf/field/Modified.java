@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Locale;
 
+import freecrumbs.finf.AttributedFile;
 import freecrumbs.finf.Field;
 
 /**
@@ -54,10 +55,22 @@ public final class Modified
             super(dateFormat, locale);
         }
 
+        /**
+         * Like {@link File#lastModified()},
+         * this is zero if the time cannot be determined.
+         */
         @Override
         protected long time(final File file) throws IOException
         {
-            return file.lastModified();
+            try
+            {
+                return AttributedFile.attributesOf(file)
+                        .lastModifiedTime().toMillis();
+            }
+            catch (final IOException ex)
+            {
+                return 0;
+            }
         }
         
     }
@@ -0,0 +1,100 @@
+package freecrumbs.finf.field;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * A least-recently-used cache of compiled regex patterns,
+ * keyed by regex and flags.
+ * This class is thread-safe.
+ * Patterns are compiled outside the lock,
+ * so threads that miss the same regex at once
+ * may each compile it, and the first one to finish is kept.
+ *
+ * @author Tone Sommerland
+ */
+final class PatternCache
+{
+    private final Map<Key, Pattern> patterns;
+
+    /**
+     * Creates a pattern cache.
+     * @param capacity the max number of patterns to keep
+     */
+    PatternCache(final int capacity)
+    {
+        this.patterns = new LinkedHashMap<>(16, .75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<Key, Pattern> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled pattern,
+     * compiling it if not in the cache.
+     * @throws java.util.regex.PatternSyntaxException
+     * if the regex is invalid
+     */
+    Pattern compile(final String regex, final int flags)
+    {
+        final var key = new Key(regex, flags);
+        synchronized (patterns)
+        {
+            final Pattern pattern = patterns.get(key);
+            if (pattern != null)
+            {
+                return pattern;
+            }
+        }
+        final Pattern pattern = Pattern.compile(regex, flags);
+        synchronized (patterns)
+        {
+            final Pattern other = patterns.putIfAbsent(key, pattern);
+            return other == null ? pattern : other;
+        }
+    }
+
+    private static final class Key
+    {
+        private final String regex;
+        private final int flags;
+
+        private Key(final String regex, final int flags)
+        {
+            assert regex != null;
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (obj == this)
+            {
+                return true;
+            }
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            final var other = (Key)obj;
+            return regex.equals(other.regex) && flags == other.flags;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(regex, flags);
+        }
+    }
+
+}
@@ -0,0 +1,469 @@
+package freecrumbs.finf.field;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts literals from a regex
+ * such that every match contains at least one of them.
+ * One literal is extracted from each top-level alternative:
+ * the longest run of characters that must occur in sequence.
+ * The extraction is conservative.
+ * Groups, character classes and other constructs
+ * are treated as unknown input,
+ * and regexes with flags that affect literal matching
+ * yield no literals at all.
+ *
+ * @author Tone Sommerland
+ */
+final class RequiredLiterals
+{
+    private static final int SUPPORTED_FLAGS
+        = Pattern.MULTILINE | Pattern.DOTALL | Pattern.UNIX_LINES;
+
+    private static final String SUPPORTED_INLINE_FLAGS = "msd";
+
+    private static final int ONCE = 1;
+    private static final int OPTIONAL = 0;
+    private static final int REPEATED = 2;
+
+    private final String regex;
+    private int index;
+    private boolean quoting;
+
+    private RequiredLiterals(final String regex)
+    {
+        this.regex = regex;
+    }
+
+    /**
+     * Returns the literals required by the given regex,
+     * or an empty list if they could not be determined.
+     * @param regex a valid regex
+     * @param flags the regex flags
+     */
+    static List<String> of(final String regex, final int flags)
+    {
+        if ((flags & Pattern.LITERAL) != 0)
+        {
+            if ((flags & ~(Pattern.LITERAL | SUPPORTED_FLAGS)) != 0
+                    || regex.isEmpty())
+            {
+                return List.of();
+            }
+            return List.of(regex);
+        }
+        if ((flags & ~SUPPORTED_FLAGS) != 0 || hasUnsupportedInlineFlags(regex))
+        {
+            return List.of();
+        }
+        return new RequiredLiterals(regex).alternatives();
+    }
+
+    /**
+     * Inline flags are detected textually,
+     * so an escaped look-alike makes the regex unsupported too.
+     */
+    private static boolean hasUnsupportedInlineFlags(final String regex)
+    {
+        for (
+                int i = regex.indexOf("(?");
+                i >= 0;
+                i = regex.indexOf("(?", i + 1))
+        {
+            int j = i + 2;
+            boolean on = true;
+            boolean unsupported = false;
+            for (; j < regex.length(); j++)
+            {
+                final char ch = regex.charAt(j);
+                if (ch == '-')
+                {
+                    on = false;
+                }
+                else if (Character.isLetter(ch))
+                {
+                    unsupported |= on
+                            && SUPPORTED_INLINE_FLAGS.indexOf(ch) < 0;
+                }
+                else
+                {
+                    break;
+                }
+            }
+            if (unsupported
+                    && j < regex.length()
+                    && (regex.charAt(j) == ')' || regex.charAt(j) == ':'))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> alternatives()
+    {
+        final var literals = new ArrayList<String>();
+        while (true)
+        {
+            final String literal = alternative();
+            if (literal == null || literal.isEmpty())
+            {
+                return List.of();
+            }
+            literals.add(literal);
+            if (index >= regex.length())
+            {
+                return literals;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Returns the longest required literal
+     * of the alternative at the current index,
+     * or null if the alternative is unsupported.
+     */
+    private String alternative()
+    {
+        String longest = "";
+        final var current = new StringBuilder();
+        while (index < regex.length())
+        {
+            if (quoting)
+            {
+                if (regex.startsWith("\\E", index))
+                {
+                    quoting = false;
+                    index += 2;
+                    continue;
+                }
+            }
+            else if (regex.charAt(index) == '|')
+            {
+                break;
+            }
+            else if (regex.startsWith("\\Q", index))
+            {
+                quoting = true;
+                index += 2;
+                continue;
+            }
+            final String atom = quoting ? codePoint() : atom();
+            if (atom == null)
+            {
+                return null;
+            }
+            if (quoting && regex.startsWith("\\E", index))
+            {
+                quoting = false;
+                index += 2;
+            }
+            final int quantity = quoting ? ONCE : quantifier();
+            if (atom.isEmpty() || quantity == OPTIONAL)
+            {
+                longest = longer(longest, current);
+                current.setLength(0);
+            }
+            else if (quantity == REPEATED)
+            {
+                current.append(atom);
+                longest = longer(longest, current);
+                current.setLength(0);
+                current.append(atom);
+            }
+            else
+            {
+                current.append(atom);
+            }
+        }
+        return longer(longest, current);
+    }
+
+    private static String longer(
+            final String longest, final CharSequence current)
+    {
+        return current.length() > longest.length()
+                ? current.toString() : longest;
+    }
+
+    /**
+     * Returns the literal at the current index,
+     * an empty string if the atom is unknown input,
+     * or null if it is unsupported.
+     */
+    private String atom()
+    {
+        switch (regex.charAt(index))
+        {
+            case '\\':
+                return escape();
+            case '[':
+                skipClass();
+                return "";
+            case '(':
+                skipGroup();
+                return "";
+            case '.':
+            case '^':
+            case '$':
+                index++;
+                return "";
+            case ')':
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+            case '}':
+            case ']':
+                return null;
+            default:
+                return codePoint();
+        }
+    }
+
+    private String codePoint()
+    {
+        final int cp = regex.codePointAt(index);
+        index += Character.charCount(cp);
+        return new String(Character.toChars(cp));
+    }
+
+    private String escape()
+    {
+        index++;
+        if (index >= regex.length())
+        {
+            return null;
+        }
+        final char ch = regex.charAt(index);
+        if (!Character.isLetterOrDigit(ch))
+        {
+            return codePoint();
+        }
+        index++;
+        switch (ch)
+        {
+            case 't':
+                return "\t";
+            case 'f':
+                return "\f";
+            case 'a':
+                return "\u0007";
+            case 'e':
+                return "\u001b";
+            case 'x':
+            case 'p':
+            case 'P':
+            case 'N':
+            case 'b':
+                if (index < regex.length() && regex.charAt(index) == '{')
+                {
+                    skipPast('}');
+                }
+                else if (ch == 'x')
+                {
+                    index += 2;
+                }
+                else if (ch == 'p' || ch == 'P')
+                {
+                    index++;
+                }
+                return "";
+            case 'u':
+                index += 4;
+                return "";
+            case 'c':
+                index++;
+                return "";
+            case 'k':
+                skipPast('>');
+                return "";
+            case '0':
+                skipOctal();
+                return "";
+            case 'n': case 'r': case 'd': case 'D': case 's': case 'S':
+            case 'w': case 'W': case 'h': case 'H': case 'v': case 'V':
+            case 'B': case 'A': case 'G': case 'Z': case 'z': case 'R':
+            case 'X':
+                return "";
+            default:
+                if (ch >= '1' && ch <= '9')
+                {
+                    while (index < regex.length()
+                            && Character.isDigit(regex.charAt(index)))
+                    {
+                        index++;
+                    }
+                    return "";
+                }
+                return null;
+        }
+    }
+
+    private void skipOctal()
+    {
+        final int start = index;
+        while (index < regex.length()
+                && index - start < 3
+                && regex.charAt(index) >= '0'
+                && regex.charAt(index) <= '7')
+        {
+            index++;
+        }
+        if (index - start == 3 && regex.charAt(start) > '3')
+        {
+            index--;
+        }
+    }
+
+    private void skipPast(final char ch)
+    {
+        final int end = regex.indexOf(ch, index);
+        index = end < 0 ? regex.length() : end + 1;
+    }
+
+    /**
+     * Skips a character class,
+     * including any nested classes.
+     */
+    private void skipClass()
+    {
+        int depth = 0;
+        while (index < regex.length())
+        {
+            final char ch = regex.charAt(index);
+            if (ch == '[')
+            {
+                depth++;
+                index++;
+                if (index < regex.length() && regex.charAt(index) == '^')
+                {
+                    index++;
+                }
+                if (index < regex.length() && regex.charAt(index) == ']')
+                {
+                    index++;
+                }
+            }
+            else if (ch == ']')
+            {
+                index++;
+                if (--depth == 0)
+                {
+                    return;
+                }
+            }
+            else
+            {
+                skipEscapeOrChar();
+            }
+        }
+    }
+
+    /**
+     * Skips a group, including any nested groups.
+     */
+    private void skipGroup()
+    {
+        int depth = 0;
+        while (index < regex.length())
+        {
+            final char ch = regex.charAt(index);
+            if (ch == '[')
+            {
+                skipClass();
+            }
+            else if (ch == '(')
+            {
+                depth++;
+                index++;
+            }
+            else if (ch == ')')
+            {
+                index++;
+                if (--depth == 0)
+                {
+                    return;
+                }
+            }
+            else
+            {
+                skipEscapeOrChar();
+            }
+        }
+    }
+
+    private void skipEscapeOrChar()
+    {
+        if (regex.startsWith("\\Q", index))
+        {
+            final int end = regex.indexOf("\\E", index + 2);
+            index = end < 0 ? regex.length() : end + 2;
+        }
+        else if (regex.charAt(index) == '\\')
+        {
+            index += 2;
+        }
+        else
+        {
+            index++;
+        }
+    }
+
+    /**
+     * Consumes any quantifier at the current index.
+     * @return {@code ONCE}, {@code OPTIONAL} or {@code REPEATED}
+     */
+    private int quantifier()
+    {
+        if (index >= regex.length())
+        {
+            return ONCE;
+        }
+        final int quantity;
+        switch (regex.charAt(index))
+        {
+            case '*':
+            case '?':
+                quantity = OPTIONAL;
+                index++;
+                break;
+            case '+':
+                quantity = REPEATED;
+                index++;
+                break;
+            case '{':
+                quantity = bounds();
+                break;
+            default:
+                return ONCE;
+        }
+        if (index < regex.length()
+                && (regex.charAt(index) == '?' || regex.charAt(index) == '+'))
+        {
+            index++;
+        }
+        return quantity;
+    }
+
+    private int bounds()
+    {
+        final int start = index + 1;
+        skipPast('}');
+        final String bounds = regex.substring(start, index - 1);
+        final String min = bounds.split(",", -1)[0].trim();
+        if (min.chars().allMatch(ch -> ch == '0'))
+        {
+            return OPTIONAL;
+        }
+        else if (bounds.trim().equals("1"))
+        {
+            return ONCE;
+        }
+        return REPEATED;
+    }
+
+}
@@ -2,17 +2,17 @@ package freecrumbs.finf.field;
 
 import static java.util.Objects.requireNonNull;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.function.Function;
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -50,6 +50,15 @@ public final class Search
     
     private static final String SEPARATOR = "-";
     
+    private static final int PATTERN_CACHE_CAPACITY = 256;
+    
+    /**
+     * Shared by all searches,
+     * so that a regex is compiled once per distinct value.
+     */
+    private static final PatternCache PATTERNS
+        = new PatternCache(PATTERN_CACHE_CAPACITY);
+    
     /**
      * Search parameters.
      * 
@@ -179,21 +188,40 @@ public final class Search
     }
     
     /**
-     * Returns the fields of the search specified with the given parameters.
+     * Returns the fields of the searches
+     * specified with the given parameters.
+     * Searches with the same charset share a single pass
+     * over the lines of the content.
      */
-    public static Field[] fields(final Params params)
+    public static Field[] fields(final Params... params)
+    {
+        final var passes = new HashMap<Charset, LinePass>();
+        final var fields = new ArrayList<Field>();
+        for (final Params searchParams : params)
+        {
+            final var searcher = new Searcher(
+                    searchParams,
+                    passes.computeIfAbsent(
+                            searchParams.charset, LinePass::new));
+            addFields(searchParams, searcher, fields);
+        }
+        return fields.stream().toArray(Field[]::new);
+    }
+    
+    private static void addFields(
+            final Params params,
+            final Searcher searcher,
+            final Collection<? super Field> fields)
     {
-        final var searcher = new Searcher();
-        final var fields = new ArrayList<Field>(4 + params.groups);
         fields.add(Field.computed(
                 params.fieldNamePrefix + FOUND_FIELD_NAME,
-                new SearchComputation(params, searcher, Search::found)));
+                new SearchComputation(searcher, Search::found, false)));
         fields.add(Field.computed(
                 params.fieldNamePrefix + GROUP_COUNT_FIELD_NAME,
-                new SearchComputation(params, searcher, Search::groupCount)));
+                new SearchComputation(searcher, Search::groupCount, false)));
         fields.add(Field.computed(
                 params.fieldNamePrefix + LINE_FIELD_NAME,
-                new SearchComputation(params, searcher, Search::line)));
+                new SearchComputation(searcher, Search::line, true)));
         for (int groupNumber = 0; groupNumber <= params.groups; groupNumber++)
         {
             addGroupFields(
@@ -202,7 +230,6 @@ public final class Search
                     groupNumber,
                     fields);
         }
-        return fields.stream().toArray(Field[]::new);
     }
 
     private static void addGroupFields(
@@ -216,15 +243,15 @@ public final class Search
         fields.add(Field.computed(
                 params.fieldNamePrefix + groupPrefix + INPUT_FIELD_NAME,
                 new SearchComputation(
-                        params, searcher, hit -> input(hit, groupNumber))));
+                        searcher, hit -> input(hit, groupNumber), false)));
         fields.add(Field.computed(
                 params.fieldNamePrefix + groupPrefix + START_FIELD_NAME,
                 new SearchComputation(
-                        params, searcher, hit -> start(hit, groupNumber))));
+                        searcher, hit -> start(hit, groupNumber), false)));
         fields.add(Field.computed(
                 params.fieldNamePrefix + groupPrefix + END_FIELD_NAME,
                 new SearchComputation(
-                        params, searcher, hit -> end(hit, groupNumber))));
+                        searcher, hit -> end(hit, groupNumber), false)));
     }
     
     private static String found(final Hit hit)
@@ -271,27 +298,36 @@ public final class Search
     
     private static final class SearchComputation implements FieldComputation
     {
-        private final Params params;
         private final Searcher searcher;
         private final Function<? super Hit, String> value;
+        private final boolean numbersLines;
         
+        /**
+         * @param numbersLines
+         * whether or not the value depends on the hit's line number
+         */
         private SearchComputation(
-                final Params params,
                 final Searcher searcher,
-                final Function<? super Hit, String> value)
+                final Function<? super Hit, String> value,
+                final boolean numbersLines)
         {
-            assert params   != null;
             assert searcher != null;
             assert value    != null;
-            this.params   = params;
-            this.searcher = searcher;
-            this.value    = value;
+            this.searcher     = searcher;
+            this.value        = value;
+            this.numbersLines = numbersLines;
         }
 
         @Override
         public void reset(final File file) throws IOException
         {
-            searcher.reset(this, file, params.regexFlags, params.regex);
+            searcher.reset(this, file, numbersLines);
+        }
+        
+        @Override
+        public void abort(final File file)
+        {
+            searcher.abort(this);
         }
 
         @Override
@@ -306,43 +342,201 @@ public final class Search
         @Override
         public String finish() throws IOException
         {
-            return value.apply(
-                    searcher.finish(params.charset, params.occurrence));
+            return value.apply(searcher.finish());
+        }
+    }
+    
+    /**
+     * Passes the lines of the content to the searchers that have joined,
+     * decoding each line once for all of them.
+     * Searchers are dropped as their searches complete,
+     * and the pass ends when no searcher needs more lines.
+     * If every searcher has literals,
+     * only the lines containing at least one of them are decoded.
+     * The first searcher to update feeds the pass;
+     * the updates of the others are ignored.
+     */
+    private static final class LinePass
+    {
+        private final Charset charset;
+        private final List<Searcher> joined = new ArrayList<>();
+        private final List<Searcher> active = new ArrayList<>();
+        private Searcher feeder;
+        private LineSplitter lines;
+        private boolean finished;
+        
+        private LinePass(final Charset charset)
+        {
+            assert charset != null;
+            this.charset = charset;
+        }
+        
+        private void join(final Searcher searcher)
+        {
+            joined.add(searcher);
+            active.add(searcher);
+        }
+        
+        private void leave(final Searcher searcher)
+        {
+            joined.remove(searcher);
+            active.remove(searcher);
+            if (joined.isEmpty())
+            {
+                feeder = null;
+                lines = null;
+                finished = false;
+                active.clear();
+            }
+        }
+        
+        private boolean update(
+                final Searcher searcher,
+                final byte[] input,
+                final int offset,
+                final int length)
+        {
+            if (lines == null)
+            {
+                feeder = searcher;
+                lines = LineSplitter.of(charset, literals(), this::dispatch);
+            }
+            if (searcher != feeder)
+            {
+                return false;
+            }
+            return lines.update(input, offset, length);
+        }
+        
+        /**
+         * Called by each searcher that joined, when it finishes.
+         * The first call handles the last line.
+         */
+        private void finish(final Searcher searcher)
+        {
+            if (lines != null && !finished)
+            {
+                finished = true;
+                lines.finish();
+            }
+            leave(searcher);
+        }
+        
+        private boolean dispatch(final CharSequence line, final int lineNumber)
+        {
+            for (int i = 0; i < active.size(); i++)
+            {
+                if (!active.get(i).search(line, lineNumber))
+                {
+                    active.remove(i--);
+                }
+            }
+            return !active.isEmpty();
+        }
+        
+        /**
+         * Returns the literals of all the searchers,
+         * or null if any of them has none.
+         */
+        private Horspool[] literals()
+        {
+            final var literals = new ArrayList<Horspool>();
+            for (final Searcher searcher : active)
+            {
+                if (searcher.literals == null)
+                {
+                    return null;
+                }
+                literals.addAll(List.of(searcher.literals));
+            }
+            return literals.isEmpty()
+                    ? null : literals.toArray(Horspool[]::new);
         }
     }
     
+    /**
+     * Searches the lines passed to it by a line pass.
+     * Where possible, only lines containing a literal
+     * required by the regex are decoded and matched.
+     * A positive occurrence completes the search as soon as it is found.
+     * A negative occurrence is searched for by reading the file backwards,
+     * if its charset can be split into lines at the byte level.
+     * Then the lines are counted from the start of the file
+     * only if the line number is needed.
+     * Otherwise, for a negative occurrence,
+     * only the last hits needed to determine the result are kept.
+     */
     private static final class Searcher
     {
+        private final Params params;
+        private final LinePass pass;
+        private final boolean backward;
         private Object master;
+        private File file;
+        private boolean numbersLines;
+        private MatchResult lastMatch;
+        private int lastMatchLineFromEnd;
+        private int remaining;
+        private String scannedRegex;
+        private Horspool[] literals;
         private Pattern pattern;
-        private ByteArrayOutputStream buffer;
+        private Deque<Hit> lastHits;
+        private int hitCount;
         private Hit hit;
         
-        private Searcher()
+        private Searcher(final Params params, final LinePass pass)
         {
+            assert params != null;
+            assert pass   != null;
+            this.params = params;
+            this.pass   = pass;
+            this.backward = params.occurrence < 0
+                    && LiteralScanner.supports(params.charset);
         }
         
         private void reset(
                 final Object caller,
                 final File file,
-                final int regexFlags,
-                final DynamicValue regex) throws IOException
+                final boolean numbersLines) throws IOException
         {
             if (master != null)
             {
+                this.numbersLines |= numbersLines;
                 return;
             }
             master = caller;
+            this.file = file;
+            this.numbersLines = numbersLines;
             try
             {
-                pattern = Pattern.compile(regex.get(file), regexFlags);
-                buffer = new ByteArrayOutputStream();
+                final String regex = params.regex.get(file);
+                pattern = PATTERNS.compile(regex, params.regexFlags);
+                literals = literalsOf(regex);
+                lastHits = new ArrayDeque<>();
+                hitCount = 0;
                 hit = Hit.notFound(pattern);
             }
             catch (final PatternSyntaxException ex)
             {
+                master = null;
                 throw new IOException(ex);
             }
+            if (params.occurrence != 0 && !backward)
+            {
+                pass.join(this);
+            }
+        }
+        
+        private void abort(final Object caller)
+        {
+            if (master == caller)
+            {
+                master = null;
+                pass.leave(this);
+                file = null;
+                pattern = null;
+                lastHits = null;
+            }
         }
         
         private boolean update(
@@ -351,84 +545,139 @@ public final class Search
                 final int offset,
                 final int length)
         {
-            if (master != caller)
+            if (master != caller || params.occurrence == 0 || backward)
             {
                 return false;
             }
-            buffer.write(input, offset, length);
-            return true;
+            return pass.update(this, input, offset, length);
+        }
+        
+        /**
+         * Returns the literals required by the given regex
+         * if the content may be prefiltered by scanning for them,
+         * otherwise null.
+         * The result is kept for as long as the regex stays the same.
+         */
+        private Horspool[] literalsOf(final String regex)
+        {
+            if (!regex.equals(scannedRegex))
+            {
+                literals = LiteralScanner.literals(
+                        params.charset,
+                        RequiredLiterals.of(regex, params.regexFlags));
+                scannedRegex = regex;
+            }
+            return literals;
         }
         
-        private Hit finish(final Charset charset, final int occurrence)
+        private Hit finish() throws IOException
         {
             if (master == null)
             {
                 return hit;
             }
             master = null;
-            try (
-                    final var reader = new BufferedReader(
-                            new InputStreamReader(
-                                    new ByteArrayInputStream(
-                                            buffer.toByteArray()),
-                                    charset));
-            )
-            {
-                return searchBuffer(reader, occurrence);
-            }
-            catch (final IOException ex)
-            {
-                throw new AssertionError(ex);
-            }
-        }
-
-        private Hit searchBuffer(
-                final BufferedReader reader,
-                final int occurrence) throws IOException
-        {
-            final var hits = new ArrayList<Hit>();
-            int lineNumber = 0;
-            for (
-                    String line = reader.readLine();
-                    line != null;
-                    line = reader.readLine())
+            try
             {
-                lineNumber++;
-                final Matcher matcher = pattern.matcher(line);
-                while (matcher.find())
+                if (backward)
+                {
+                    searchBackward();
+                }
+                else
                 {
-                    hits.add(Hit.found(lineNumber, matcher));
-                    if (completionShortCircuited(hits, occurrence))
+                    if (params.occurrence != 0)
+                    {
+                        pass.finish(this);
+                    }
+                    if (params.occurrence < 0
+                            && lastHits.size() == -params.occurrence)
                     {
-                        return hit;
+                        hit = lastHits.getFirst();
                     }
                 }
             }
-            complete(hits, occurrence);
+            finally
+            {
+                file = null;
+                pattern = null;
+                lastHits = null;
+                lastMatch = null;
+            }
             return hit;
         }
         
-        private boolean completionShortCircuited(
-                final List<Hit> hits, final int occurrence)
+        /**
+         * A hit found this way has line number zero
+         * if the line number is not needed.
+         */
+        private void searchBackward() throws IOException
         {
-            if (occurrence > 0 && hits.size() >= occurrence)
+            remaining = -params.occurrence;
+            BackwardLines.read(
+                    file, params.charset, literals, this::searchBackward);
+            if (lastMatch == null)
             {
-                pattern = null;
-                buffer = null;
-                hit = hits.get(occurrence - 1);
+                return;
+            }
+            final int lineNumber = numbersLines
+                    ? BackwardLines.countLines(file) - lastMatchLineFromEnd + 1
+                    : 0;
+            hit = Hit.found(lineNumber, lastMatch);
+        }
+        
+        /**
+         * Returns false when the negative occurrence is found.
+         */
+        private boolean searchBackward(
+                final CharSequence line, final int lineFromEnd)
+        {
+            final Matcher matcher = pattern.matcher(line);
+            int count = 0;
+            while (matcher.find())
+            {
+                count++;
+            }
+            if (count < remaining)
+            {
+                remaining -= count;
                 return true;
             }
+            matcher.reset();
+            for (int i = count - remaining; i >= 0; i--)
+            {
+                matcher.find();
+            }
+            lastMatch = matcher.toMatchResult();
+            lastMatchLineFromEnd = lineFromEnd;
             return false;
         }
         
-        private void complete(final List<Hit> hits, final int occurrence)
+        /**
+         * Returns false when a positive occurrence is found.
+         */
+        private boolean search(final CharSequence line, final int lineNumber)
         {
-            pattern = null;
-            buffer = null;
-            if (occurrence < 0 && hits.size() >= -occurrence)
+            final Matcher matcher = pattern.matcher(line);
+            while (matcher.find())
             {
-                hit = hits.get(hits.size() + occurrence);
+                if (params.occurrence > 0)
+                {
+                    if (++hitCount == params.occurrence)
+                    {
+                        hit = Hit.found(lineNumber, matcher);
+                        return false;
+                    }
+                }
+                else
+                {
+                    lastHits.addLast(Hit.found(lineNumber, matcher));
+                    if (lastHits.size() > -params.occurrence)
+                    {
+                        lastHits.removeFirst();
+                    }
+                }
             }
+            return true;
         }
     }
     
@@ -438,9 +687,12 @@ public final class Search
         private final int groupCount;
         private final GroupHit[] groupHits;
         
-        private Hit(final int lineNumber, final Matcher matcher)
+        /**
+         * @param lineNumber the line number, or zero if unknown
+         */
+        private Hit(final int lineNumber, final MatchResult matcher)
         {
-            assert lineNumber >= 1;
+            assert lineNumber >= 0;
             this.lineNumber = lineNumber;
             this.groupCount = matcher.groupCount();
             this.groupHits = new GroupHit[this.groupCount + 1];
@@ -458,7 +710,7 @@ public final class Search
         }
         
         private static Hit found(
-                final int lineNumber, final Matcher matcher)
+                final int lineNumber, final MatchResult matcher)
         {
             return new Hit(lineNumber, matcher);
         }
@@ -480,7 +732,7 @@ public final class Search
         private final int start;
         private final int end;
         
-        private GroupHit(final Matcher matcher, final int groupNumber)
+        private GroupHit(final MatchResult matcher, final int groupNumber)
         {
             assert     matcher     != null
                     && groupNumber >= 0
@@ -1,10 +1,13 @@
 package freecrumbs.finf.field;
 
+import freecrumbs.finf.AttributedFile;
 import freecrumbs.finf.Field;
 
 /**
  * The file size in bytes.
  * The name of this field is {@code "size"}.
+ * The size is taken from the {@link AttributedFile attribute snapshot}
+ * if there is one.
  * 
  * @author Tone Sommerland
  */
@@ -13,7 +16,8 @@ public final class Size
     private static final String NAME = "size";
     
     public static final Field
-    FIELD = Field.simple(NAME, file -> String.valueOf(file.length()));
+    FIELD = Field.simple(
+            NAME, file -> String.valueOf(AttributedFile.sizeOf(file)));
 
     private Size()
     {
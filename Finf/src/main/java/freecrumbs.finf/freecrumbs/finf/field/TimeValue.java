@@ -53,7 +53,7 @@ public abstract class TimeValue implements FieldValue
     {
         if (dateFormat == null)
         {
-            return String.valueOf(file.lastModified());
+            return String.valueOf(time(file));
         }
         return dateFormat.format(new Date(time(file)));
     }
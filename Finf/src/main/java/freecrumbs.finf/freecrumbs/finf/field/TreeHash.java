@@ -0,0 +1,223 @@
+package freecrumbs.finf.field;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.calclipse.lib.misc.EncodingUtil;
+
+import freecrumbs.finf.Field;
+import freecrumbs.finf.FieldComputation;
+
+/**
+ * File-content Merkle hash.
+ * The content is split into chunks of one mebibyte
+ * that are hashed concurrently on a fork-join pool.
+ * The tree has the shape given in RFC 6962:
+ * The hash of a single chunk is H(0x00 || chunk),
+ * and the hash of n &gt; 1 chunks is H(0x01 || left || right),
+ * where the left subtree holds the largest power of two
+ * that is less than n chunks.
+ * The hash of an empty file is H() of nothing.
+ * This is a different digest than the one of {@link Hash},
+ * and the two coexist.
+ * The chunks are read with positional reads
+ * on a channel of its own when the computation is finished,
+ * so the file is not served to the computation,
+ * and is read through the page cache
+ * whichever content reader is configured.
+ *
+ * @author Tone Sommerland
+ */
+public final class TreeHash
+{
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private static final ThreadLocal<ByteBuffer> CHUNK_BUFFER
+        = ThreadLocal.withInitial(() -> ByteBuffer.allocate(CHUNK_SIZE));
+
+    private TreeHash()
+    {
+    }
+
+    /**
+     * Returns a tree-hash-computation field.
+     * @param name the field name
+     * @param algorithm the hash algorithm applied to chunks and nodes
+     */
+    public static Field field(final String name, final String algorithm)
+    {
+        return Field.computed(name, new TreeHashComputation(algorithm));
+    }
+
+    private static MessageDigest messageDigest(final String algorithm)
+    {
+        try
+        {
+            return MessageDigest.getInstance(algorithm);
+        }
+        catch (final NoSuchAlgorithmException ex)
+        {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    private static final class TreeHashComputation implements FieldComputation
+    {
+        private final String algorithm;
+        private File file;
+
+        private TreeHashComputation(final String algorithm)
+        {
+            this.algorithm = requireNonNull(algorithm, "algorithm");
+        }
+
+        @Override
+        public void reset(final File file) throws IOException
+        {
+            try
+            {
+                MessageDigest.getInstance(algorithm);
+            }
+            catch (final NoSuchAlgorithmException ex)
+            {
+                throw new IOException(ex);
+            }
+            this.file = file;
+        }
+
+        @Override
+        public String definition()
+        {
+            return "treehash:" + algorithm + ":" + CHUNK_SIZE;
+        }
+
+        /**
+         * The chunks are read by {@link #finish()}.
+         */
+        @Override
+        public boolean readsContent()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean update(
+                final byte[] input,
+                final int offset,
+                final int length) throws IOException
+        {
+            return false;
+        }
+
+        @Override
+        public String finish() throws IOException
+        {
+            try (final var channel = FileChannel.open(
+                    file.toPath(), StandardOpenOption.READ))
+            {
+                final long size = channel.size();
+                if (size == 0)
+                {
+                    return EncodingUtil.bytesToHex(
+                            false, messageDigest(algorithm).digest());
+                }
+                final long chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+                final var root = new Subtree(channel, algorithm, 0, chunks);
+                return EncodingUtil.bytesToHex(
+                        false, ForkJoinPool.commonPool().invoke(root));
+            }
+            catch (final UncheckedIOException ex)
+            {
+                throw ex.getCause();
+            }
+        }
+
+    }
+
+    /**
+     * Computes the hash of a range of chunks.
+     */
+    private static final class Subtree extends RecursiveTask<byte[]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final String algorithm;
+        private final long first;
+        private final long count;
+
+        private Subtree(
+                final FileChannel channel,
+                final String algorithm,
+                final long first,
+                final long count)
+        {
+            assert count > 0;
+            this.channel = channel;
+            this.algorithm = algorithm;
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        protected byte[] compute()
+        {
+            if (count == 1)
+            {
+                return leaf();
+            }
+            final long split = Long.highestOneBit(count - 1);
+            final var left = new Subtree(channel, algorithm, first, split);
+            final var right = new Subtree(
+                    channel, algorithm, first + split, count - split);
+            left.fork();
+            final byte[] rightHash = right.compute();
+            final byte[] leftHash = left.join();
+            final MessageDigest digest = messageDigest(algorithm);
+            digest.update(NODE_PREFIX);
+            digest.update(leftHash);
+            digest.update(rightHash);
+            return digest.digest();
+        }
+
+        private byte[] leaf()
+        {
+            final ByteBuffer chunk = CHUNK_BUFFER.get().clear();
+            final long position = first * CHUNK_SIZE;
+            try
+            {
+                while (chunk.hasRemaining())
+                {
+                    final int bytesRead = channel.read(
+                            chunk, position + chunk.position());
+                    if (bytesRead < 0)
+                    {
+                        break;
+                    }
+                }
+            }
+            catch (final IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+            final MessageDigest digest = messageDigest(algorithm);
+            digest.update(LEAF_PREFIX);
+            digest.update(chunk.flip());
+            return digest.digest();
+        }
+
+    }
+
+}
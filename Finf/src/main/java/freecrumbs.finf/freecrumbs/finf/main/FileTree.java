@@ -0,0 +1,277 @@
+package freecrumbs.finf.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import freecrumbs.finf.AttributedFile;
+
+/**
+ * Lazily traverses directory trees depth first, one after another,
+ * following symbolic links,
+ * and yields the files that are not directories.
+ * The attributes of each entry are read once,
+ * and the files are {@link AttributedFile attributed} with them.
+ * A symbolic link that cannot be followed
+ * is yielded without attributes.
+ * The order and the failures are those of
+ * {@link Files#find(Path, int, java.util.function.BiPredicate,
+ * java.nio.file.FileVisitOption...) Files.find}:
+ * A loop in the tree or an unreadable directory
+ * results in an {@link UncheckedIOException}.
+ *
+ * @author Tone Sommerland
+ */
+final class FileTree implements Iterator<File>
+{
+    private final Deque<Directory> directories = new ArrayDeque<>();
+    private final Iterator<File> roots;
+    private File next;
+
+    private FileTree(final Iterator<File> roots)
+    {
+        this.roots = roots;
+    }
+
+    /**
+     * Returns a lazily populated stream of the files in the given trees,
+     * in the order of the roots.
+     * A root that is not a directory is yielded as is.
+     * The stream should be closed to release open directories.
+     * The trees are concatenated by this class rather than by
+     * {@link Stream#flatMap(java.util.function.Function) flatMap},
+     * as the iterator of a flat-mapped stream
+     * may buffer an entire tree.
+     */
+    static Stream<File> of(final Collection<File> roots)
+    {
+        final var tree = new FileTree(List.copyOf(roots).iterator());
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(
+                        tree, Spliterator.ORDERED | Spliterator.NONNULL),
+                false)
+            .onClose(tree::close);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (next == null)
+        {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public File next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        final File file = next;
+        next = null;
+        return file;
+    }
+
+    /**
+     * Returns the next non-directory, or null if the tree is exhausted.
+     */
+    private File advance()
+    {
+        while (true)
+        {
+            if (directories.isEmpty())
+            {
+                if (!roots.hasNext())
+                {
+                    return null;
+                }
+                final File root = enterRoot(roots.next());
+                if (root != null)
+                {
+                    return root;
+                }
+                continue;
+            }
+            final Directory directory = directories.peek();
+            final Path path;
+            final AttributedFile file;
+            try
+            {
+                if (!directory.entries.hasNext())
+                {
+                    directories.pop().close();
+                    continue;
+                }
+                path = directory.entries.next();
+                file = attributed(path);
+            }
+            catch (final DirectoryIteratorException ex)
+            {
+                throw new UncheckedIOException(ex.getCause());
+            }
+            catch (final IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+            if (file == null)
+            {
+                return path.toFile();
+            }
+            else if (!file.attributes().isDirectory())
+            {
+                return file;
+            }
+            enter(path, file.attributes());
+        }
+    }
+
+    /**
+     * Enters the given root if it is a directory.
+     * @return the root if it is to be yielded as is, otherwise null
+     */
+    private File enterRoot(final File root)
+    {
+        final AttributedFile file;
+        try
+        {
+            file = attributed(root.toPath());
+        }
+        catch (final IOException ex)
+        {
+            return root;
+        }
+        if (file == null)
+        {
+            return root;
+        }
+        else if (!file.attributes().isDirectory())
+        {
+            return file;
+        }
+        enter(root.toPath(), file.attributes());
+        return null;
+    }
+
+    private void enter(final Path path, final BasicFileAttributes attributes)
+    {
+        try
+        {
+            checkLoop(path, attributes);
+            directories.push(new Directory(
+                    path, attributes, Files.newDirectoryStream(path)));
+        }
+        catch (final IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void checkLoop(
+            final Path path,
+            final BasicFileAttributes attributes) throws IOException
+    {
+        final Object key = attributes.fileKey();
+        for (final Directory ancestor : directories)
+        {
+            final Object ancestorKey = ancestor.attributes.fileKey();
+            if (key != null && ancestorKey != null
+                    ? key.equals(ancestorKey)
+                    : Files.isSameFile(path, ancestor.path))
+            {
+                throw new FileSystemLoopException(path.toString());
+            }
+        }
+    }
+
+    private void close()
+    {
+        while (!directories.isEmpty())
+        {
+            directories.pop().close();
+        }
+    }
+
+    /**
+     * Reads the attributes of the given path.
+     * @return null if the path is a broken symbolic link
+     */
+    private static AttributedFile attributed(final Path path)
+            throws IOException
+    {
+        try
+        {
+            return AttributedFile.of(path);
+        }
+        catch (final IOException ex)
+        {
+            try
+            {
+                Files.readAttributes(
+                        path,
+                        BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                return null;
+            }
+            catch (final IOException ex2)
+            {
+                ex.addSuppressed(ex2);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * An open directory being traversed.
+     */
+    private static final class Directory
+    {
+        final Path path;
+        final BasicFileAttributes attributes;
+        final DirectoryStream<Path> stream;
+        final Iterator<Path> entries;
+
+        Directory(
+                final Path path,
+                final BasicFileAttributes attributes,
+                final DirectoryStream<Path> stream)
+        {
+            this.path = path;
+            this.attributes = attributes;
+            this.stream = stream;
+            this.entries = stream.iterator();
+        }
+
+        void close()
+        {
+            try
+            {
+                stream.close();
+            }
+            catch (final IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+}
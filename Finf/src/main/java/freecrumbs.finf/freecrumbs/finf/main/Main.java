@@ -1,10 +1,13 @@
 package freecrumbs.finf.main;
 
+import static java.util.stream.Collectors.toList;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -14,6 +17,7 @@ import java.util.stream.Stream;
 
 import freecrumbs.finf.Config;
 import freecrumbs.finf.ConfigLoader;
+import freecrumbs.finf.FieldStore;
 import freecrumbs.finf.Finf;
 
 /**
@@ -29,7 +33,10 @@ public final class Main
     
     private static final String CONFIG_FILE_OPTION     = "-c";
     private static final String CONFIG_OVERRIDE_OPTION = "-o";
+    private static final String JOBS_OPTION            = "-j";
     private static final String HELP_OPTION            = "-h";
+    
+    private static final String JOBS_KEY = "jobs";
 
     private Main()
     {
@@ -45,14 +52,28 @@ public final class Main
                 System.out.println(HELP);
                 return;
             }
-            final Collection<File> inputFiles = inputFiles(parsedArgs);
             final Config config = loadConfig(parsedArgs);
-            Finf.output(inputFiles, config, System.out);
+            try (final Stream<File> inputFiles = inputFiles(parsedArgs))
+            {
+                Finf.output(inputFiles, config, System.out);
+            }
+            finally
+            {
+                final FieldStore store = config.store().orElse(null);
+                if (store != null)
+                {
+                    store.close();
+                }
+            }
         }
         catch (final IOException ex)
         {
             handle(ex);
         }
+        catch (final UncheckedIOException ex)
+        {
+            handle(ex.getCause());
+        }
     }
     
     private static void handle(final Throwable ex)
@@ -61,26 +82,17 @@ public final class Main
         System.exit(1);
     }
 
-    private static Collection<File> inputFiles(final Args parsedArgs)
+    /**
+     * Returns a lazily populated stream of the input files.
+     * Directories are traversed as the stream is consumed,
+     * so the number of files held in memory
+     * does not depend on the size of the trees.
+     */
+    private static Stream<File> inputFiles(final Args parsedArgs)
     {
-        final var inputFiles = new ArrayList<File>();
-        parsedArgs.inputFiles.stream()
+        return FileTree.of(parsedArgs.inputFiles.stream()
             .map(File::new)
-            .forEach(file -> addTree(file, inputFiles));
-        return inputFiles;
-    }
-    
-    private static void addTree(
-            final File file, final Collection<? super File> files)
-    {
-        if (file.isDirectory())
-        {
-            Stream.of(file.listFiles()).forEach(child -> addTree(child, files));
-        }
-        else
-        {
-            files.add(file);
-        }
+            .collect(toList()));
     }
     
     private static Config loadConfig(final Args args) throws IOException
@@ -163,6 +175,14 @@ public final class Main
                 }
                 configOverrides.add(args[++i]);
             }
+            else if (JOBS_OPTION.equals(args[i]))
+            {
+                if (i == args.length - 1)
+                {
+                    return null;
+                }
+                configOverrides.add(JOBS_KEY + "=" + args[++i]);
+            }
             else
             {
                 inputFiles.addAll(List.of(args).subList(i, args.length));
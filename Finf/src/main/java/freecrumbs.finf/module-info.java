@@ -1,6 +1,7 @@
 module freecrumbs.finf
 {
     requires java.logging;
+    requires jdk.unsupported;
     requires com.calclipse.lib;
     exports freecrumbs.finf.main;
 }
@@ -24,6 +24,25 @@ assert_equals_str()
     [ "$1" = "$2" ] || fail "expected: $1, actual $2"
 }
 
+assert_same_info_as_with_plain_reads()
+{
+    DIR=`mktemp -d`
+    seq 40000 | awk '/5$/ { printf "%s\r\n", $0; next } { print }' \
+        > "$DIR/text"
+    head -c 1500000 /dev/urandom > "$DIR/binary"
+    printf 'abc' > "$DIR/small"
+    printf '' > "$DIR/empty"
+    OUTPUT='<filename> <md5> <sha-256> <crc32c> <adler32> <xxh64>'
+    OUTPUT="$OUTPUT <class> <eolcount> <crcount> <var.a.line> <var.b.input>"
+    MODE=("$@")
+    set -- -o order=filename -o "output=$OUTPUT<eol>" \
+        -o 'var.a=/^39999$/o=-1' -o 'var.b=/\d*777\d*/o=5'
+    EXPECTED=`finf "$@" "$DIR"`
+    ACTUAL=`finf "${MODE[@]}" "$@" "$DIR"`
+    rm -rf "$DIR"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+}
+
 zero_args_yields_success_and_no_output()
 {
     ACTUAL=`finf` || fail "exit status"
@@ -108,6 +127,386 @@ eolcount_field_is_the_number_of_line_terminators()
     assert_equals_str "$EXPECTED" "$ACTUAL"
 }
 
+parallel_jobs_yield_same_output_as_sequential_processing()
+{
+    EXPECTED=`finf -o 'output=<filename> <md5><eol>' "$HOME_DIR"`
+    ACTUAL=`finf -j 4 -o 'output=<filename> <md5><eol>' "$HOME_DIR"`
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+}
+
+cached_values_yield_same_output_as_computed_ones()
+{
+    CACHE=`mktemp -u`
+    EXPECTED=`finf -o 'output=<filename> <md5><eol>' "$HOME_DIR"`
+    finf -o "cache.file=$CACHE" -o 'output=<md5>' "$HOME_DIR" > /dev/null
+    ACTUAL=`finf -o "cache.file=$CACHE" -o 'output=<filename> <md5><eol>' \
+        -o cache.stats=1 "$HOME_DIR" 2> "$CACHE.stats"`
+    STATS=`cat "$CACHE.stats"`
+    rm -f "$CACHE" "$CACHE.stats"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+    [[ "$STATS" =~ "cache: "[1-9][0-9]*" hits, 0 misses" ]] \
+        || fail "statistics: $STATS"
+}
+
+cached_value_is_used_while_size_and_modified_time_are_unchanged()
+{
+    DIR=`mktemp -d`
+    echo "Abc" > "$DIR/a"
+    touch -d @1000000000 "$DIR/a"
+    EXPECTED=`finf -o "cache.file=$DIR.cache" -o 'output=<md5>' "$DIR/a"`
+    echo "Xyz" > "$DIR/a"
+    touch -d @1000000000 "$DIR/a"
+    ACTUAL=`finf -o "cache.file=$DIR.cache" -o 'output=<md5>' "$DIR/a"`
+    touch -d @1000000001 "$DIR/a"
+    CHANGED=`finf -o "cache.file=$DIR.cache" -o 'output=<md5>' "$DIR/a"`
+    rm -rf "$DIR" "$DIR.cache"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+    [ "$CHANGED" != "$EXPECTED" ] || fail "stale value: $CHANGED"
+}
+
+record_cut_short_is_discarded_from_cache_file()
+{
+    CACHE=`mktemp -u`
+    finf -o "cache.file=$CACHE" -o 'output=<md5>' "$ME" > /dev/null
+    EXPECTED=`wc -c < "$CACHE"`
+    printf '\0\0\0\11abc' >> "$CACHE"
+    STATS=`finf -o "cache.file=$CACHE" -o cache.stats=1 -o 'output=<md5>' \
+        "$ME" 2>&1 > /dev/null` || fail "exit status"
+    ACTUAL=`wc -c < "$CACHE"`
+    rm -f "$CACHE"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+    [[ "$STATS" =~ "cache: 1 hits" ]] || fail "statistics: $STATS"
+}
+
+cache_file_is_compacted_without_input_files()
+{
+    DIR=`mktemp -d`
+    echo "Abc" > "$DIR/a"
+    echo "Abc" > "$DIR/b"
+    finf -o "cache.file=$DIR.cache" -o 'output=<md5>' "$DIR" > /dev/null
+    echo "Xyz" >> "$DIR/b"
+    finf -o "cache.file=$DIR.cache" -o 'output=<md5>' "$DIR" > /dev/null
+    rm "$DIR/a"
+    ACTUAL=`finf -o "cache.file=$DIR.cache" -o cache.compact=1 \
+        -o cache.stats=1 2>&1` || fail "exit status"
+    rm -rf "$DIR" "$DIR.cache"
+    [[ "$ACTUAL" =~ "1 entries, compacted from 3 records" ]] \
+        || fail "statistics: $ACTUAL"
+}
+
+large_tree_is_traversed_lazily_in_a_small_heap()
+{
+    TREE=`mktemp -d`
+    (cd "$TREE" && seq 100000 | xargs touch)
+    ACTUAL=`JAVA_TOOL_OPTIONS=-Xmx16m finf -o count=1 "$TREE" 2> /dev/null`
+    STATUS=$?
+    rm -rf "$TREE"
+    [ "$STATUS" -eq 0 ] || fail "exit status"
+    [ -n "$ACTUAL" ] || fail "no output"
+}
+
+hard_linked_file_is_read_once()
+{
+    DIR=`mktemp -d`
+    echo "Abc" > "$DIR/a"
+    ln "$DIR/a" "$DIR/b"
+    ACTUAL=`finf -o "cache.file=$DIR.cache" -o cache.stats=1 \
+        -o 'output=<md5>' "$DIR" 2>&1 > /dev/null`
+    rm -rf "$DIR" "$DIR.cache"
+    [[ "$ACTUAL" =~ ", 1 writes," ]] || fail "statistics: $ACTUAL"
+}
+
+file_reached_through_symbolic_link_before_its_target_is_read_once()
+{
+    DIR=`mktemp -d`
+    echo "Abc" > "$DIR/a"
+    ln -s a "$DIR/b"
+    ACTUAL=`finf -o "cache.file=$DIR.cache" -o cache.stats=1 \
+        -o 'output=<md5>' "$DIR/b" "$DIR/a" 2>&1 > /dev/null`
+    rm -rf "$DIR" "$DIR.cache"
+    [[ "$ACTUAL" =~ ", 1 writes," ]] || fail "statistics: $ACTUAL"
+}
+
+xattr_cached_value_is_used_while_size_and_modified_time_are_unchanged()
+{
+    DIR=`mktemp -d`
+    echo "Abc" > "$DIR/a"
+    touch -d @1000000000 "$DIR/a"
+    EXPECTED=`finf -o 'output=<md5>' "$DIR/a"`
+    STATS=`finf -o cache.xattr=1 -o cache.stats=1 -o 'output=<md5>' \
+        "$DIR/a" 2>&1 > /dev/null`
+    echo "Xyz" > "$DIR/a"
+    touch -d @1000000000 "$DIR/a"
+    ACTUAL=`finf -o cache.xattr=1 -o 'output=<md5>' "$DIR/a"`
+    rm -rf "$DIR"
+    # Skipped where extended attributes cannot be written.
+    if [[ "$STATS" =~ "1 writes (0 failed)" ]]
+    then
+        assert_equals_str "$EXPECTED" "$ACTUAL"
+    fi
+}
+
+cache_file_and_xattr_settings_are_mutually_exclusive()
+{
+    CACHE=`mktemp -u`
+    finf -o "cache.file=$CACHE" -o cache.xattr=1 "$ME" 2> /dev/null \
+        && fail "exit status"
+    rm -f "$CACHE"
+}
+
+dups_mode_groups_files_with_identical_content()
+{
+    DIR=`mktemp -d`
+    printf 'abcdefghij' > "$DIR/a"
+    printf 'abcdefghiX' > "$DIR/b"
+    cp "$DIR/a" "$DIR/c"
+    head -c 4096 /dev/zero > "$DIR/h"
+    { cat "$DIR/h"; printf 'middle1'; cat "$DIR/h"; } > "$DIR/d"
+    { cat "$DIR/h"; printf 'middle2'; cat "$DIR/h"; } > "$DIR/e"
+    cp "$DIR/d" "$DIR/f"
+    cp "$DIR/e" "$DIR/g"
+    EXPECTED=`printf 'a c\nd f\ne g'`
+    ACTUAL=`finf -o dups=1 -o order=filename -o 'output=<filename><eol>' \
+        "$DIR" | awk 'BEGIN { RS = ""; FS = "\n" } { $1 = $1; print }' \
+        | sort`
+    rm -rf "$DIR"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+}
+
+xxh64_field_yields_reference_values()
+{
+    DIR=`mktemp -d`
+    printf '' > "$DIR/1"
+    printf 'a' > "$DIR/2"
+    printf 'Nobody inspects the spammish repetition' > "$DIR/3"
+    # Longer than a read buffer.
+    seq 1 10000 > "$DIR/4"
+    EXPECTED=`printf '%s\n' ef46db3751d8e999 d24ec4f1a98c6e5b \
+        fbcea83c8a378bf1 471649412d9a3124`
+    ACTUAL=`finf -o 'output=<xxh64><eol>' -o order=filename "$DIR"`
+    rm -rf "$DIR"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+}
+
+order_with_count_keeps_ties_in_input_order()
+{
+    DIR=`mktemp -d`
+    printf 'ab' > "$DIR/a"
+    printf 'b' > "$DIR/b"
+    printf 'c' > "$DIR/c"
+    printf 'd' > "$DIR/d"
+    printf 'e' > "$DIR/e"
+    set -- "$DIR/e" "$DIR/c" "$DIR/a" "$DIR/b" "$DIR/d"
+    EXPECTED=`printf '%s\n' e c b`
+    ACTUAL=`finf -o order=size -o count=3 -o 'output=<filename><eol>' "$@"`
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+    EXPECTED=`printf '%s\n' e c b d a`
+    ACTUAL=`finf -o order=size -o count=2147483647 \
+        -o 'output=<filename><eol>' "$@"`
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+    EXPECTED=`printf '%s\n' e c b d`
+    ACTUAL=`finf -o order=size -o count=4 -o order.memory=1 \
+        -o 'output=<filename><eol>' "$@"`
+    rm -rf "$DIR"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+}
+
+search_finds_matches_that_do_not_contain_the_regex_literally()
+{
+    FILE=`mktemp`
+    printf '%s\n' 'Nothing here' 'The COLOR is red' dog ac aa foobar a.b \
+        > "$FILE"
+    printf 'caf\303\251\n' >> "$FILE"
+    while read -r EXPECTED VAR
+    do
+        ACTUAL=`finf -o 'output=<var.line>' -o "var=$VAR" "$FILE"`
+        assert_equals_str "$EXPECTED $VAR" "$ACTUAL $VAR" || break
+    done <<'CASES'
+2 /(?i)color/
+2 /(?i)THE color/o=-1
+3 /(?x) d o g # comment/
+2 /COLOU?R/
+3 /cat|dog/
+4 /ab{0}c/
+5 /(a)\1/
+6 /(?<=foo)bar/
+6 /foo(?=bar)/
+7 /\Qa.b\E/
+-1 /\Qa.c\E/
+8 /caf\N{LATIN SMALL LETTER E WITH ACUTE}/c=UTF-8
+CASES
+    rm "$FILE"
+}
+
+search_finds_same_matches_in_single_and_double_byte_charsets()
+{
+    DIR=`mktemp -d`
+    printf 'Nothing\ncaf\351\nna\357ve here\n' > "$DIR/ISO-8859-1"
+    iconv -f ISO-8859-1 -t UTF-16LE "$DIR/ISO-8859-1" > "$DIR/UTF-16LE"
+    iconv -f ISO-8859-1 -t UTF-16BE "$DIR/ISO-8859-1" > "$DIR/UTF-16BE"
+    for CHARSET in ISO-8859-1 UTF-16LE UTF-16BE
+    do
+        EXPECTED="3 0 10 2 0"
+        ACTUAL=`finf -o 'output=<var.a.line> <var.a.start> <var.a.end> \
+<var.b.line> <var.c.found>' \
+            -o "var.a=/na\\\\x{ef}ve here/c=$CHARSET" \
+            -o "var.b=/caf\\\\x{e9}/o=-1,c=$CHARSET" \
+            -o "var.c=/here\\\\n?x/c=$CHARSET" \
+            "$DIR/$CHARSET"`
+        assert_equals_str "$EXPECTED" "$ACTUAL" || break
+    done
+    rm -rf "$DIR"
+}
+
+backward_search_yields_same_match_as_forward_search()
+{
+    DIR=`mktemp -d`
+    printf 'a1\na2\na3' > "$DIR/no-eol"
+    printf 'a1\r\na2\r\na3\r\n' > "$DIR/crlf"
+    printf 'a1\ra2\r\ra3\r' > "$DIR/cr"
+    printf 'a1\r\n\303\2512\r\ra3' | iconv -f UTF-8 -t UTF-16LE \
+        > "$DIR/utf-16"
+    OUTPUT='output=<var.found> <var.line> <var.input> <var.start> <var.end>'
+    while read FILE CHARSET
+    do
+        for N in 1 2 3
+        do
+            EXPECTED=`finf -o "$OUTPUT" \
+                -o "var=/\\\\D\\\\d/o=$((4 - N)),c=$CHARSET" "$DIR/$FILE"`
+            ACTUAL=`finf -o "$OUTPUT" \
+                -o "var=/\\\\D\\\\d/o=-$N,c=$CHARSET" "$DIR/$FILE"`
+            assert_equals_str "$FILE $EXPECTED" "$FILE $ACTUAL" || break 2
+        done
+        EXPECTED="0 -1  -1 -1"
+        ACTUAL=`finf -o "$OUTPUT" \
+            -o "var=/\\\\D\\\\d/o=-4,c=$CHARSET" "$DIR/$FILE"`
+        assert_equals_str "$FILE $EXPECTED" "$FILE $ACTUAL" || break
+    done <<'FILES'
+no-eol UTF-8
+crlf UTF-8
+cr UTF-8
+utf-16 UTF-16LE
+FILES
+    rm -rf "$DIR"
+}
+
+backward_search_finds_matches_across_block_boundaries()
+{
+    FILE=`mktemp`
+    X=`head -c 20000 /dev/zero | tr '\0' x`
+    printf 'span1\n%sspan2%s\nspan123\nspan9\n' "$X" "$X" > "$FILE"
+    yes y | head -n 4092 >> "$FILE"
+    OUTPUT='output=<var.line> <var.input> <var.start> <var.end><eol>'
+    EXPECTED=`printf '%s\n' '4 span9 0 5' '3 span123 0 7' \
+        '2 span2 20000 20005' '1 span1 0 5'`
+    ACTUAL=`for N in 1 2 3 4
+        do
+            finf -o "$OUTPUT" -o "var=/span\\\\d+/o=-$N" "$FILE"
+        done`
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+    EXPECTED=`for N in 4 3 2 1
+        do
+            finf -o "$OUTPUT" -o "var=/span\\\\d+/o=$N" "$FILE"
+        done`
+    rm "$FILE"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+}
+
+search_decodes_lines_and_characters_across_read_buffers()
+{
+    DIR=`mktemp -d`
+    seq 10000 | awk '{ printf "%s\303\251=%s\n", $0, $0 }' > "$DIR/UTF-8"
+    iconv -f UTF-8 -t UTF-16LE "$DIR/UTF-8" > "$DIR/UTF-16LE"
+    for CHARSET in UTF-8 UTF-16LE
+    do
+        EXPECTED="10000 5 12 10000 5 12 7 4097 4 5001 4"
+        ACTUAL=`finf -o 'output=<var.a.line> <var.a.start> <var.a.end> \
+<var.b.line> <var.b.start> <var.b.end> <var.b.1-start> \
+<var.c.line> <var.c.start> <var.d.line> <var.d.start>' \
+            -o "var.a=/\\\\D\\\\D\\\\d+\$/o=10000,c=$CHARSET" \
+            -o "var.b=/\\\\x{e9}=(\\\\d+)\$/o=10000,g=1,c=$CHARSET" \
+            -o "var.c=/\\\\x{e9}=4097\$/c=$CHARSET" \
+            -o "var.d=/\\\\x{e9}=\\\\d+\$/o=-5000,c=$CHARSET" \
+            "$DIR/$CHARSET"`
+        assert_equals_str "$CHARSET $EXPECTED" "$CHARSET $ACTUAL" || break
+    done
+    rm -rf "$DIR"
+}
+
+searches_in_one_file_decode_its_content_in_their_own_charsets()
+{
+    FILE=`mktemp`
+    printf 'x\ncaf\303\251\n' > "$FILE"
+    EXPECTED="2 2 2 2 0"
+    ACTUAL=`finf -o 'output=<var.a.line> <var.b.line> <var.c.line> \
+<var.d.line> <var.e.found>' \
+        -o 'var.a=/caf\x{c3}\x{a9}$/c=ISO-8859-1' \
+        -o 'var.b=/caf\x{e9}$/c=UTF-8' \
+        -o 'var.c=/\w\w\w\x{e9}$/c=UTF-8' \
+        -o 'var.d=/\w\w\w..$/c=ISO-8859-1' \
+        -o 'var.e=/caf\x{e9}/c=ISO-8859-1' \
+        "$FILE"`
+    rm "$FILE"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+}
+
+order_spilled_to_disk_yields_same_output_as_order_in_memory()
+{
+    DIR=`mktemp -d`
+    seq 10000 | split -l 1 -a 4 - "$DIR/"
+    EXPECTED=`finf -o order=sha-512 -o 'output=<filename> <sha-512><eol>' \
+        "$DIR"`
+    ACTUAL=`finf -o order=sha-512 -o order.memory=1 \
+        -o 'output=<filename> <sha-512><eol>' "$DIR"`
+    rm -rf "$DIR"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+}
+
+megabyte_settings_too_large_for_bytes_are_rejected()
+{
+    finf -o order=size -o order.memory=8796093022208 "$ME" 2> /dev/null \
+        && fail "order.memory"
+    finf -o read.nio=1 -o read.mmap=8796093022208 "$ME" 2> /dev/null \
+        && fail "read.mmap"
+}
+
+fanned_out_reads_yield_same_info_as_plain_reads()
+{
+    assert_same_info_as_with_plain_reads -o read.fanout=1
+}
+
+channel_reads_yield_same_info_as_plain_reads()
+{
+    assert_same_info_as_with_plain_reads -o read.nio=1
+    assert_same_info_as_with_plain_reads -o read.nio=1 -o read.mmap=1
+}
+
+direct_reads_yield_same_info_as_plain_reads()
+{
+    assert_same_info_as_with_plain_reads -o read.direct=1
+}
+
+prefetched_reads_yield_same_info_as_plain_reads()
+{
+    assert_same_info_as_with_plain_reads -o read.prefetch=1
+}
+
+tree_hash_is_merkle_hash_of_mebibyte_chunks()
+{
+    DIR=`mktemp -d`
+    printf '' > "$DIR/a"
+    printf 'abc' > "$DIR/b"
+    seq 400000 > "$DIR/c"
+    EXPECTED="\
+a e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855
+b 609f6e36d2405585188d5cfd761f407c7cc46a7d3f314c88270469dde315fcd1
+c 3884dc6b59a736761cffbf026fb5e2a87f403e765d8cf2065a96fddf22bff207"
+    ACTUAL=`finf -o order=filename -o 'output=<filename> <sha-256tree><eol>' \
+        "$DIR"`
+    rm -rf "$DIR"
+    assert_equals_str "$EXPECTED" "$ACTUAL"
+}
+
 zero_args_yields_success_and_no_output
 exit_status_is_nonzero_on_error
 default_config_just_outputs_filenames
@@ -121,5 +520,31 @@ filter_setting_supports_format_pattern_style
 date_format_setting_is_applied_to_time_fields
 empty_date_format_turns_timestamp_formatting_of
 eolcount_field_is_the_number_of_line_terminators
+parallel_jobs_yield_same_output_as_sequential_processing
+fanned_out_reads_yield_same_info_as_plain_reads
+channel_reads_yield_same_info_as_plain_reads
+direct_reads_yield_same_info_as_plain_reads
+prefetched_reads_yield_same_info_as_plain_reads
+tree_hash_is_merkle_hash_of_mebibyte_chunks
+cached_values_yield_same_output_as_computed_ones
+cached_value_is_used_while_size_and_modified_time_are_unchanged
+record_cut_short_is_discarded_from_cache_file
+cache_file_is_compacted_without_input_files
+xattr_cached_value_is_used_while_size_and_modified_time_are_unchanged
+cache_file_and_xattr_settings_are_mutually_exclusive
+dups_mode_groups_files_with_identical_content
+xxh64_field_yields_reference_values
+order_with_count_keeps_ties_in_input_order
+order_spilled_to_disk_yields_same_output_as_order_in_memory
+megabyte_settings_too_large_for_bytes_are_rejected
+large_tree_is_traversed_lazily_in_a_small_heap
+hard_linked_file_is_read_once
+file_reached_through_symbolic_link_before_its_target_is_read_once
+search_finds_matches_that_do_not_contain_the_regex_literally
+search_finds_same_matches_in_single_and_double_byte_charsets
+backward_search_yields_same_match_as_forward_search
+backward_search_finds_matches_across_block_boundaries
+search_decodes_lines_and_characters_across_read_buffers
+searches_in_one_file_decode_its_content_in_their_own_charsets
 
 [ "$RED" -eq "0" ] && echo "GREEN" || echo "RED"